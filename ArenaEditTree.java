@@ -0,0 +1,914 @@
+package editortrees;
+
+import java.util.Arrays;
+
+/**
+ * An EditTree whose nodes are not Node objects but slots in an arena: a
+ * node is an int index, its links, rank, element and height are kept by
+ * the arena under that index, and index 0 is the null node, standing in
+ * for Node.NULL_NODE. This class keeps them in int[], char[] and byte[]
+ * arrays, where a node takes 15 bytes instead of a Node's 40 or so, the
+ * nodes of a tree sit next to each other instead of all over the heap, and
+ * the garbage collector has a handful of arrays to trace instead of one
+ * object per character. OffHeapEditTree keeps them outside the heap.
+ *
+ * The algorithms are the same as EditTree's, so every operation leaves the
+ * tree in exactly the same shape, with the same ranks, balance codes and
+ * rotation counts.
+ *
+ * The trees that split makes share their arena with the tree they came
+ * from, so splitting and concatenating them back together stays O(log N).
+ * Since the arena is shared, a piece that is dropped instead of being
+ * concatenated back keeps its slots for as long as the arena lives; pass
+ * it to recycle once done with it so they are handed out again.
+ * Concatenating trees from two different arenas first moves the nodes of
+ * the smaller tree over to the other arena, as long as both arenas are of
+ * the same kind; otherwise other's nodes are moved into this tree's arena,
+ * so a tree never changes the kind of storage it uses.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+
+public class ArenaEditTree {
+
+	static final int NULL = 0; // the null node's index in every arena
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int MAX_HEIGHT = 64; // more than any AVL tree of up to 2^31 nodes
+
+	private Arena arena;
+	private int root;
+	private int rotationCount;
+	private int size;
+
+	// The path from the root to the node being worked on, reused by every
+	// operation that walks down and then back up the tree. For split,
+	// pathStart and pathEnd hold the range of positions in each node's
+	// subtree.
+	private final int[] path = new int[MAX_HEIGHT];
+	private final int[] pathStart = new int[MAX_HEIGHT];
+	private final int[] pathEnd = new int[MAX_HEIGHT];
+
+	/*
+	 * The storage for the nodes of one or more trees, and the node-level
+	 * algorithms Node has, written against it. Subclasses decide where the
+	 * fields live. A node's height is kept rather than its balance code,
+	 * since join needs heights and the balance code can be read off the
+	 * children's heights. Deleted nodes go on a free list, chained through
+	 * left, and are handed out again before the arena grows.
+	 */
+	abstract static class Arena {
+
+		private int count = 1; // slots handed out so far, the null node included
+		private int free = NULL; // first slot on the free list
+
+		abstract int left(int node);
+
+		abstract int right(int node);
+
+		// inorder position of the node within its own subtree
+		abstract int rank(int node);
+
+		abstract char element(int node);
+
+		// height of the node's subtree, -1 for the null node
+		abstract int height(int node);
+
+		abstract void setLeft(int node, int left);
+
+		abstract void setRight(int node, int right);
+
+		abstract void setRank(int node, int rank);
+
+		abstract void setElement(int node, char element);
+
+		abstract void setHeight(int node, int height);
+
+		// number of slots there is room for
+		abstract int capacity();
+
+		// makes room for more slots, keeping every node where it is
+		abstract void grow();
+
+		// returns a new node holding ch with no children
+		int allocate(char ch) {
+			int node;
+			if (this.free != NULL) {
+				node = this.free;
+				this.free = left(node);
+			} else {
+				if (this.count == capacity())
+					grow();
+				node = this.count++;
+			}
+			setLeft(node, NULL);
+			setRight(node, NULL);
+			setRank(node, 0);
+			setHeight(node, 0);
+			setElement(node, ch);
+			return node;
+		}
+
+		void release(int node) {
+			setLeft(node, this.free);
+			this.free = node;
+		}
+
+		// slots handed out so far, free or not, for tests
+		int slotCount() {
+			return this.count;
+		}
+
+		void releaseSubtree(int node) {
+			if (node == NULL)
+				return;
+			releaseSubtree(left(node));
+			releaseSubtree(right(node));
+			release(node);
+		}
+
+		void updateHeight(int node) {
+			setHeight(node, 1 + Math.max(height(left(node)), height(right(node))));
+		}
+
+		// The balance code Node would have cached for node.
+		Node.Code balance(int node) {
+			int leftHeight = height(left(node));
+			int rightHeight = height(right(node));
+			if (leftHeight > rightHeight)
+				return Node.Code.LEFT;
+			if (leftHeight < rightHeight)
+				return Node.Code.RIGHT;
+			return Node.Code.SAME;
+		}
+
+		// single rotate right, returns the new root of this subtree
+		int srr(int node) {
+			int newRoot = left(node);
+			setLeft(node, right(newRoot));
+			setRight(newRoot, node);
+			setRank(node, rank(node) - (rank(newRoot) + 1));
+			updateHeight(node);
+			updateHeight(newRoot);
+			return newRoot;
+		}
+
+		// single rotate left, returns the new root of this subtree
+		int srl(int node) {
+			int newRoot = right(node);
+			setRight(node, left(newRoot));
+			setLeft(newRoot, node);
+			setRank(newRoot, rank(newRoot) + rank(node) + 1);
+			updateHeight(node);
+			updateHeight(newRoot);
+			return newRoot;
+		}
+
+		// Same as Node.rebalance.
+		int rebalance(int node) {
+			int difference = height(left(node)) - height(right(node));
+			if (difference > 1) {
+				if (balance(left(node)) == Node.Code.RIGHT)
+					setLeft(node, srl(left(node)));
+				return srr(node);
+			}
+			if (difference < -1) {
+				if (balance(right(node)) == Node.Code.LEFT)
+					setRight(node, srr(right(node)));
+				return srl(node);
+			}
+			updateHeight(node);
+			return node;
+		}
+
+		// Same as Node.join.
+		int join(int left, int leftSize, int pivot, int right) {
+			if (height(left) > height(right) + 1) {
+				setRight(left, join(right(left), leftSize - rank(left) - 1, pivot, right));
+				return rebalance(left);
+			}
+			if (height(right) > height(left) + 1) {
+				setRank(right, rank(right) + leftSize + 1);
+				setLeft(right, join(left, leftSize, pivot, left(right)));
+				return rebalance(right);
+			}
+			setLeft(pivot, left);
+			setRight(pivot, right);
+			setRank(pivot, leftSize);
+			updateHeight(pivot);
+			return pivot;
+		}
+
+		// Same as Node.build.
+		int build(CharSequence s, int begin, int end) {
+			if (begin == end)
+				return NULL;
+			int middle = begin + (end - begin) / 2;
+			int node = allocate(s.charAt(middle));
+			setLeft(node, build(s, begin, middle));
+			setRight(node, build(s, middle + 1, end));
+			setRank(node, middle - begin);
+			updateHeight(node);
+			return node;
+		}
+
+		// Copies the subtree at node in from into this arena and returns the
+		// copy's root.
+		int copy(Arena from, int node) {
+			if (node == NULL)
+				return NULL;
+			int copy = allocate(from.element(node));
+			setLeft(copy, copy(from, from.left(node)));
+			setRight(copy, copy(from, from.right(node)));
+			setRank(copy, from.rank(node));
+			setHeight(copy, from.height(node));
+			return copy;
+		}
+
+		// Same as Node.getChars.
+		void getChars(int node, int offset, int from, int to, char[] dst, int dstBegin) {
+			if (node == NULL)
+				return;
+			int position = offset + rank(node);
+			if (from < position)
+				getChars(left(node), offset, from, to, dst, dstBegin);
+			if (from <= position && position < to)
+				dst[dstBegin + position - from] = element(node);
+			if (position + 1 < to)
+				getChars(right(node), position + 1, from, to, dst, dstBegin);
+		}
+
+		// Same as Node.toDebugString.
+		void appendDebugString(int node, StringBuilder sb) {
+			if (node == NULL)
+				return;
+			sb.append(element(node)).append(rank(node)).append(balance(node)).append(", ");
+			appendDebugString(left(node), sb);
+			appendDebugString(right(node), sb);
+		}
+
+	}
+
+	/*
+	 * An arena on the heap, with slot i of each array holding a field of
+	 * node i.
+	 */
+	static final class HeapArena extends Arena {
+
+		private int[] left;
+		private int[] right;
+		private int[] rank;
+		private char[] element;
+		private byte[] height;
+
+		HeapArena(int capacity) {
+			capacity = Math.max(capacity, 2);
+			this.left = new int[capacity];
+			this.right = new int[capacity];
+			this.rank = new int[capacity];
+			this.element = new char[capacity];
+			this.height = new byte[capacity];
+			this.height[NULL] = -1;
+		}
+
+		@Override
+		int left(int node) {
+			return this.left[node];
+		}
+
+		@Override
+		int right(int node) {
+			return this.right[node];
+		}
+
+		@Override
+		int rank(int node) {
+			return this.rank[node];
+		}
+
+		@Override
+		char element(int node) {
+			return this.element[node];
+		}
+
+		@Override
+		int height(int node) {
+			return this.height[node];
+		}
+
+		@Override
+		void setLeft(int node, int left) {
+			this.left[node] = left;
+		}
+
+		@Override
+		void setRight(int node, int right) {
+			this.right[node] = right;
+		}
+
+		@Override
+		void setRank(int node, int rank) {
+			this.rank[node] = rank;
+		}
+
+		@Override
+		void setElement(int node, char element) {
+			this.element[node] = element;
+		}
+
+		@Override
+		void setHeight(int node, int height) {
+			this.height[node] = (byte) height;
+		}
+
+		@Override
+		int capacity() {
+			return this.left.length;
+		}
+
+		@Override
+		void grow() {
+			int capacity = 2 * this.left.length;
+			this.left = Arrays.copyOf(this.left, capacity);
+			this.right = Arrays.copyOf(this.right, capacity);
+			this.rank = Arrays.copyOf(this.rank, capacity);
+			this.element = Arrays.copyOf(this.element, capacity);
+			this.height = Arrays.copyOf(this.height, capacity);
+		}
+
+	}
+
+	/**
+	 * Construct an empty tree
+	 */
+	public ArenaEditTree() {
+		this(new HeapArena(INITIAL_CAPACITY));
+	}
+
+	/**
+	 * Construct a single-node tree whose element is ch
+	 *
+	 * @param ch
+	 */
+	public ArenaEditTree(char ch) {
+		this();
+		this.root = this.arena.allocate(ch);
+		this.size = 1;
+	}
+
+	/**
+	 * Make this tree be a copy of e, in an arena of its own, with the same
+	 * shape and contents.
+	 *
+	 * @param e
+	 */
+	public ArenaEditTree(ArenaEditTree e) {
+		this(new HeapArena(e.size + 1), e);
+	}
+
+	/**
+	 * Create a tree whose toString is s in O(N) time, built perfectly
+	 * balanced in an arena of exactly the right size.
+	 *
+	 * @param s
+	 */
+	public ArenaEditTree(String s) {
+		this((CharSequence) s);
+	}
+
+	/**
+	 * Create a tree whose toString is the contents of s, in O(N) time.
+	 *
+	 * @param s
+	 */
+	public ArenaEditTree(CharSequence s) {
+		this(new HeapArena(s.length() + 1), s);
+	}
+
+	// an empty tree whose nodes will go in arena
+	ArenaEditTree(Arena arena) {
+		this(arena, NULL, 0);
+	}
+
+	// a tree made of nodes already in arena
+	ArenaEditTree(Arena arena, int root, int size) {
+		this.arena = arena;
+		this.root = root;
+		this.size = size;
+	}
+
+	// a copy of e with its nodes in arena
+	ArenaEditTree(Arena arena, ArenaEditTree e) {
+		this(arena);
+		this.root = arena.copy(e.arena, e.root);
+		this.size = e.size;
+		if (this.root != NULL)
+			this.rotationCount = e.rotationCount;
+	}
+
+	// a tree holding s with its nodes in arena
+	ArenaEditTree(Arena arena, CharSequence s) {
+		this(arena);
+		this.root = arena.build(s, 0, s.length());
+		this.size = s.length();
+	}
+
+	/*
+	 * Returns a tree made of nodes already in arena, for split. A subclass
+	 * returns one of its own kind, so its split can too.
+	 */
+	ArenaEditTree newTree(Arena arena, int root, int size) {
+		return new ArenaEditTree(arena, root, size);
+	}
+
+	// the arena this tree's nodes are in at the moment
+	Arena arena() {
+		return this.arena;
+	}
+
+	/**
+	 * @return number of rotations since tree was created. A double rotation
+	 *         counts as two.
+	 */
+	public int totalRotationCount() {
+		return this.rotationCount;
+	}
+
+	/**
+	 * @return the string produced by an inorder traversal of this tree
+	 */
+	@Override
+	public String toString() {
+		char[] chars = new char[this.size];
+		this.arena.getChars(this.root, 0, 0, this.size, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Same as EditTree.toDebugString.
+	 *
+	 * @return The string of elements, ranks, and balance codes, given in a
+	 *         pre-order traversal of the tree.
+	 */
+	public String toDebugString() {
+		if (this.root == NULL)
+			return "[]";
+		StringBuilder sb = new StringBuilder("[");
+		this.arena.appendDebugString(this.root, sb);
+		sb.setLength(sb.length() - 2);
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * @return the height of this tree
+	 */
+	public int height() {
+		return this.arena.height(this.root);
+	}
+
+	/**
+	 * @return the number of nodes in this tree
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @param ch
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char ch) {
+		add(ch, this.size);
+	}
+
+	/**
+	 * @param ch
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 */
+	public void add(char ch, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		Arena a = this.arena;
+		int node = a.allocate(ch);
+		this.size++;
+		if (this.root == NULL) {
+			this.root = node;
+			return;
+		}
+		// Walk down to the empty spot just before the node now at pos,
+		// counting the new node in the rank of every node it goes left of.
+		int depth = 0;
+		int current = this.root;
+		while (true) {
+			this.path[depth++] = current;
+			int rank = a.rank(current);
+			if (pos <= rank) {
+				a.setRank(current, rank + 1);
+				if (a.left(current) == NULL) {
+					a.setLeft(current, node);
+					break;
+				}
+				current = a.left(current);
+			} else {
+				pos -= rank + 1;
+				if (a.right(current) == NULL) {
+					a.setRight(current, node);
+					break;
+				}
+				current = a.right(current);
+			}
+		}
+		// Back up the path until a subtree's height stops changing. After an
+		// insert one rotation always brings the height back, so stop there too.
+		for (int j = depth - 1; j >= 0; j--) {
+			current = this.path[j];
+			int oldHeight = a.height(current);
+			if (rebalancePath(j) != current || a.height(current) == oldHeight)
+				return;
+		}
+	}
+
+	/*
+	 * Same as EditTree.rebalanceFinger: rotates path[j] if one of its sides
+	 * has become two taller than the other, links the new subtree root into
+	 * path[j - 1] (or makes it the root) and returns it.
+	 */
+	private int rebalancePath(int j) {
+		Arena a = this.arena;
+		int node = this.path[j];
+		int newRoot;
+		int difference = a.height(a.left(node)) - a.height(a.right(node));
+		if (difference > 1) {
+			if (a.balance(a.left(node)) == Node.Code.RIGHT) {
+				this.rotationCount++;
+				a.setLeft(node, a.srl(a.left(node)));
+			}
+			this.rotationCount++;
+			newRoot = a.srr(node);
+		} else if (difference < -1) {
+			if (a.balance(a.right(node)) == Node.Code.LEFT) {
+				this.rotationCount++;
+				a.setRight(node, a.srr(a.right(node)));
+			}
+			this.rotationCount++;
+			newRoot = a.srl(node);
+		} else {
+			a.updateHeight(node);
+			return node;
+		}
+		if (j == 0)
+			this.root = newRoot;
+		else if (a.left(this.path[j - 1]) == node)
+			a.setLeft(this.path[j - 1], newRoot);
+		else
+			a.setRight(this.path[j - 1], newRoot);
+		this.path[j] = newRoot;
+		return newRoot;
+	}
+
+	/**
+	 * Inserts all of s so that its first character ends up at position pos,
+	 * in O(k + log N).
+	 *
+	 * @param s
+	 *            the characters to add
+	 * @param pos
+	 *            inorder position of the first added character
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 */
+	public void add(CharSequence s, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		if (s.length() == 0)
+			return;
+		ArenaEditTree rest = this.split(pos);
+		this.concatenate(new ArenaEditTree(this.arena, s));
+		this.concatenate(rest);
+	}
+
+	/**
+	 * @param pos
+	 *            position in the tree
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size)
+			throw new IndexOutOfBoundsException();
+		Arena a = this.arena;
+		int node = this.root;
+		int rank;
+		while (pos != (rank = a.rank(node))) {
+			if (pos < rank) {
+				node = a.left(node);
+			} else {
+				pos -= rank + 1;
+				node = a.right(node);
+			}
+		}
+		return a.element(node);
+	}
+
+	/**
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless both pos and pos+length-1 are legitimate indexes
+	 *             within this tree.
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (pos > this.size - 1 || pos < 0 || length < 0 || pos + length > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		char[] chars = new char[length];
+		this.arena.getChars(this.root, 0, pos, pos + length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Same as EditTree.getChars.
+	 *
+	 * @param srcBegin
+	 *            position of the first character to copy
+	 * @param srcEnd
+	 *            position after the last character to copy
+	 * @param dst
+	 *            the destination array
+	 * @param dstBegin
+	 *            the start offset in dst
+	 * @throws IndexOutOfBoundsException
+	 *             if the range is not within this tree or does not fit in dst
+	 */
+	public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin)
+			throws IndexOutOfBoundsException {
+		if (srcBegin < 0 || srcBegin > srcEnd || srcEnd > this.size
+				|| dstBegin < 0 || dstBegin + (srcEnd - srcBegin) > dst.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.arena.getChars(this.root, 0, srcBegin, srcEnd, dst, dstBegin);
+	}
+
+	/**
+	 * Deletes the character at pos, replacing a node with two children by
+	 * its successor like EditTree does.
+	 *
+	 * @param pos
+	 *            position of character to delete from this tree
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size)
+			throw new IndexOutOfBoundsException();
+		int unlinked = removeNode(pos);
+		char deleted = this.arena.element(unlinked);
+		this.arena.release(unlinked);
+		return deleted;
+	}
+
+	/*
+	 * Does the work of delete(pos) and returns the node that was unlinked,
+	 * holding the deleted character, so concatenate can reuse it as its
+	 * pivot.
+	 */
+	private int removeNode(int pos) {
+		Arena a = this.arena;
+		// Walk down to the node at pos, taking it out of the rank of every
+		// node it is left of.
+		int depth = 0;
+		int node = this.root;
+		while (true) {
+			this.path[depth++] = node;
+			int rank = a.rank(node);
+			if (pos == rank)
+				break;
+			if (pos < rank) {
+				a.setRank(node, rank - 1);
+				node = a.left(node);
+			} else {
+				pos -= rank + 1;
+				node = a.right(node);
+			}
+		}
+		// A node with two children takes over its successor's element, and the
+		// successor, which never has a left child, is unlinked instead.
+		int unlinked = node;
+		if (a.left(node) != NULL && a.right(node) != NULL) {
+			unlinked = a.right(node);
+			this.path[depth++] = unlinked;
+			while (a.left(unlinked) != NULL) {
+				a.setRank(unlinked, a.rank(unlinked) - 1);
+				unlinked = a.left(unlinked);
+				this.path[depth++] = unlinked;
+			}
+			char deleted = a.element(node);
+			a.setElement(node, a.element(unlinked));
+			a.setElement(unlinked, deleted);
+		}
+		int child = (a.left(unlinked) != NULL) ? a.left(unlinked) : a.right(unlinked);
+		depth--;
+		if (depth == 0)
+			this.root = child;
+		else if (a.left(this.path[depth - 1]) == unlinked)
+			a.setLeft(this.path[depth - 1], child);
+		else
+			a.setRight(this.path[depth - 1], child);
+		this.size--;
+		// Unlike an insert, a rotation after a delete can leave the subtree
+		// shorter, so keep going until some height stays the same.
+		for (int j = depth - 1; j >= 0; j--) {
+			int oldHeight = a.height(this.path[j]);
+			if (a.height(rebalancePath(j)) == oldHeight)
+				break;
+		}
+		a.setLeft(unlinked, NULL);
+		a.setRight(unlinked, NULL);
+		a.setRank(unlinked, 0);
+		a.setHeight(unlinked, 0);
+		return unlinked;
+	}
+
+	/**
+	 * Same as EditTree.delete(start, length).
+	 *
+	 * @param start
+	 *            position of beginning of string to delete
+	 * @param length
+	 *            length of string to delete
+	 * @return a tree containing the deleted string, sharing this tree's
+	 *         arena. Pass it to recycle once done with it.
+	 * @throws IndexOutOfBoundsException
+	 *             unless both start and start+length-1 are in range for this
+	 *             tree.
+	 */
+	public ArenaEditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		if (start < 0 || start + length >= this.size)
+			throw new IndexOutOfBoundsException(
+					(start < 0) ? "negative first argument to delete"
+							: "delete range extends past end of string");
+		ArenaEditTree t2 = this.split(start);
+		ArenaEditTree t3 = t2.split(length);
+		this.concatenate(t3);
+		return t2;
+	}
+
+	/**
+	 * Appends the contents of other to this tree and makes other empty. This
+	 * is O(log N) if the two trees share an arena, and otherwise also copies
+	 * one of the trees into the other's arena.
+	 *
+	 * @param other
+	 * @throws IllegalArgumentException
+	 *             if this == other
+	 */
+	public void concatenate(ArenaEditTree other) throws IllegalArgumentException {
+		if (this == other)
+			throw new IllegalArgumentException();
+		if (other.root == NULL)
+			return;
+		// other is left empty but in its own arena, which it may share with
+		// other trees and whose kind of storage it keeps
+		Arena home = other.arena;
+		if (this.arena != other.arena) {
+			if (this.size < other.size && this.arena.getClass() == other.arena.getClass()) {
+				int copy = other.arena.copy(this.arena, this.root);
+				this.arena.releaseSubtree(this.root);
+				this.arena = other.arena;
+				this.root = copy;
+			} else {
+				int copy = this.arena.copy(other.arena, other.root);
+				other.arena.releaseSubtree(other.root);
+				other.arena = this.arena;
+				other.root = copy;
+			}
+		}
+		if (this.root == NULL) {
+			this.root = other.root;
+			this.size = other.size;
+			other.arena = home;
+			other.root = NULL;
+			other.size = 0;
+			return;
+		}
+		// the node taken off the end of one tree is reused to join the two
+		int pivot;
+		if (this.height() >= other.height())
+			pivot = other.removeNode(0);
+		else
+			pivot = this.removeNode(this.size - 1);
+		this.root = this.arena.join(this.root, this.size, pivot, other.root);
+		this.size += 1 + other.size;
+		other.arena = home;
+		other.root = NULL;
+		other.size = 0;
+	}
+
+	/**
+	 * Makes other empty and puts its nodes on the free list of its arena, to
+	 * be handed out again to whichever tree uses that arena next. Meant for
+	 * the trees that split and delete(start, length) return, which share
+	 * their arena with this tree and would otherwise keep their slots in it
+	 * for good.
+	 *
+	 * @param other
+	 *            the tree whose nodes to give back
+	 * @throws IllegalArgumentException
+	 *             if this == other
+	 */
+	public void recycle(ArenaEditTree other) throws IllegalArgumentException {
+		if (this == other)
+			throw new IllegalArgumentException();
+		other.arena.releaseSubtree(other.root);
+		other.root = NULL;
+		other.size = 0;
+	}
+
+	/**
+	 * Same as EditTree.split. The new tree shares this tree's arena, so if it
+	 * is not concatenated back, pass it to recycle once done with it.
+	 *
+	 * @param pos
+	 *            where to split this tree
+	 * @return a new tree containing all of the elements of this tree whose
+	 *         positions are >= position. Their nodes are removed from this
+	 *         tree.
+	 * @throws IndexOutOfBoundsException
+	 */
+	public ArenaEditTree split(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		Arena a = this.arena;
+		// Record the path down to the gap just before pos.
+		int depth = 0;
+		int node = this.root;
+		int start = 0;
+		int end = this.size;
+		while (node != NULL) {
+			this.path[depth] = node;
+			this.pathStart[depth] = start;
+			this.pathEnd[depth] = end;
+			depth++;
+			if (pos <= start + a.rank(node)) {
+				end = start + a.rank(node);
+				node = a.left(node);
+			} else {
+				start += a.rank(node) + 1;
+				node = a.right(node);
+			}
+		}
+		// Join the pieces from the bottom up.
+		int left = NULL;
+		int right = NULL;
+		int leftSize = 0;
+		int rightSize = 0;
+		for (int j = depth - 1; j >= 0; j--) {
+			node = this.path[j];
+			int position = this.pathStart[j] + a.rank(node);
+			if (pos <= position) {
+				int rightSubtreeSize = this.pathEnd[j] - position - 1;
+				right = a.join(right, rightSize, node, a.right(node));
+				rightSize += 1 + rightSubtreeSize;
+			} else {
+				int leftSubtreeSize = a.rank(node);
+				left = a.join(a.left(node), leftSubtreeSize, node, left);
+				leftSize += 1 + leftSubtreeSize;
+			}
+		}
+		this.root = left;
+		this.size = leftSize;
+		return newTree(a, right, rightSize);
+	}
+
+	/**
+	 * @param s
+	 *            the string to look for
+	 * @return the position in this tree of the first occurrence of s; -1 if s
+	 *         does not occur
+	 */
+	public int find(String s) {
+		return find(s, 0);
+	}
+
+	/**
+	 * @param s
+	 *            the string to search for
+	 * @param pos
+	 *            the position in the tree to begin the search
+	 * @return the position in this tree of the first occurrence of s that does
+	 *         not occur before position pos; -1 if s does not occur
+	 */
+	public int find(String s, int pos) {
+		char[] chars = new char[this.size];
+		this.arena.getChars(this.root, 0, 0, this.size, chars, 0);
+		return EditTree.find(chars, s, pos);
+	}
+
+}
@@ -0,0 +1,137 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for ArenaEditTree, which runs every edit side by side with an
+ * EditTree and expects the very same tree afterwards.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+public class ArenaEditTreeTest {
+
+	private static void assertSameTree(EditTree expected, ArenaEditTree actual) {
+		assertEquals(expected.toDebugString(), actual.toDebugString());
+		assertEquals(expected.toString(), actual.toString());
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.height(), actual.height());
+		assertEquals(expected.totalRotationCount(), actual.totalRotationCount());
+	}
+
+	@Test
+	public void testRandomEditsMatchEditTree() {
+		Random random = new Random(230);
+		EditTree expected = new EditTree();
+		ArenaEditTree actual = new ArenaEditTree();
+		for (int i = 0; i < 20000; i++) {
+			int k = random.nextInt(10);
+			if (k < 5 || expected.size() == 0) {
+				char ch = (char) ('a' + random.nextInt(26));
+				int pos = random.nextInt(expected.size() + 1);
+				expected.add(ch, pos);
+				actual.add(ch, pos);
+			} else if (k < 8) {
+				int pos = random.nextInt(expected.size());
+				assertEquals(expected.delete(pos), actual.delete(pos));
+			} else if (k < 9) {
+				expected.add('z');
+				actual.add('z');
+			} else {
+				int pos = random.nextInt(expected.size());
+				assertEquals(expected.get(pos), actual.get(pos));
+			}
+			if (i % 500 == 0)
+				assertSameTree(expected, actual);
+		}
+		assertSameTree(expected, actual);
+	}
+
+	@Test
+	public void testSplitAndConcatenateMatchEditTree() {
+		Random random = new Random(230);
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < 3000; i++)
+			s.append((char) ('a' + random.nextInt(26)));
+		EditTree expected = new EditTree(s);
+		ArenaEditTree actual = new ArenaEditTree(s);
+		for (int i = 0; i < 300; i++) {
+			int pos = random.nextInt(expected.size() + 1);
+			EditTree expectedRest = expected.split(pos);
+			ArenaEditTree actualRest = actual.split(pos);
+			assertSameTree(expected, actual);
+			assertEquals(expectedRest.toDebugString(), actualRest.toDebugString());
+			// put the two halves back together the other way round half of
+			// the time, so that concatenate goes both ways
+			if (i % 2 == 0) {
+				expectedRest.concatenate(expected);
+				actualRest.concatenate(actual);
+				expected = expectedRest;
+				actual = actualRest;
+			} else {
+				expected.concatenate(expectedRest);
+				actual.concatenate(actualRest);
+			}
+			assertSameTree(expected, actual);
+		}
+		expected.add("inserted", 1234);
+		actual.add("inserted", 1234);
+		assertSameTree(expected, actual);
+		assertEquals(expected.delete(100, 1000).toString(), actual.delete(100, 1000).toString());
+		assertSameTree(expected, actual);
+		assertEquals(expected.find("inserted"), actual.find("inserted"));
+	}
+
+	@Test
+	public void testRecycledPiecesKeepTheArenaSmall() {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < 10000; i++)
+			s.append((char) ('a' + i % 26));
+		String chunk = s.substring(0, 1000);
+		try (OffHeapEditTree offHeap = new OffHeapEditTree(s)) {
+			for (ArenaEditTree t : new ArenaEditTree[] { new ArenaEditTree(s), offHeap }) {
+				for (int i = 0; i < 2000; i++) {
+					t.recycle(t.delete(100, 1000));
+					t.add(chunk, 100);
+				}
+				assertEquals(s.length(), t.size());
+				assertEquals(s.substring(0, 100) + chunk, t.get(0, 1100));
+				// the slots of the deleted pieces are handed out again, so the
+				// arena never needs more than the tree plus one piece
+				assertTrue(t.arena().slotCount() <= 1 + s.length() + chunk.length());
+			}
+		}
+	}
+
+	@Test
+	public void testTreesFromDifferentArenas() {
+		// each tree built from a string has an arena of its own, so these
+		// concatenates move nodes from one arena to another
+		ArenaEditTree small = new ArenaEditTree("abc");
+		ArenaEditTree large = new ArenaEditTree("defghijklmnop");
+		small.concatenate(large);
+		assertEquals("abcdefghijklmnop", small.toString());
+		assertEquals("", large.toString());
+		ArenaEditTree rest = small.split(8);
+		ArenaEditTree copy = new ArenaEditTree(rest);
+		rest.concatenate(new ArenaEditTree("q"));
+		small.concatenate(rest);
+		assertEquals("abcdefghijklmnopq", small.toString());
+		assertEquals("ijklmnop", copy.toString());
+		for (int i = 0; i < small.size(); i++)
+			assertEquals((char) ('a' + i), small.get(i));
+		while (small.size() > 0)
+			small.delete(small.size() / 2);
+		assertEquals("[]", small.toDebugString());
+		assertEquals(-1, small.height());
+		// the freed slots are handed out again
+		for (int i = 0; i < 100; i++)
+			small.add((char) ('a' + i % 26), i / 2);
+		assertEquals(100, small.size());
+	}
+
+}
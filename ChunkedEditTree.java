@@ -0,0 +1,790 @@
+package editortrees;
+
+import java.util.Arrays;
+
+/**
+ * A height-balanced tree with rank like EditTree, with the same public
+ * methods, but whose nodes each hold a run of up to CHUNK_SIZE characters
+ * instead of a single one. Ranks count characters, not nodes. A chunk that
+ * fills up is split in two, and one that drops below a quarter full is
+ * merged into a neighbour, as are the chunks that meet where a tree is
+ * split or concatenated, so the tree stays about N / CHUNK_SIZE nodes and
+ * far shallower, and the text takes little more than 2 bytes per character
+ * instead of a whole Node for each. Each chunk is a gap buffer, so typing
+ * or deleting at one place inside a chunk moves no characters after the
+ * first keystroke, and only updates ranks on the way down to it.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+
+public class ChunkedEditTree {
+
+	static final int CHUNK_SIZE = 512; // most characters one chunk holds
+	static final int MIN_CHUNK_SIZE = CHUNK_SIZE / 4; // smaller chunks are merged away
+
+	/*
+	 * A node holding length characters in chars, around a gap at gapStart
+	 * that takes up the rest of the array: chars[0..gapStart) come first,
+	 * then the last length - gapStart of the array. The gap stays wherever
+	 * the last insert or delete in the chunk was, so a run of keystrokes at
+	 * one place only has to move characters for the first of them. rank is
+	 * the number of characters in the left subtree, so the node's own
+	 * characters start at position rank within its subtree.
+	 */
+	static final class Chunk {
+
+		static final Chunk NULL_CHUNK = new Chunk();
+
+		char[] chars;
+		int length;
+		int gapStart;
+		Chunk left, right;
+		int rank;
+		int height;
+
+		private Chunk() {
+			this.chars = new char[0];
+			this.height = -1;
+		}
+
+		// the characters are chars[0..length), so the gap is at the end
+		Chunk(char[] chars, int length) {
+			this.chars = chars;
+			this.length = length;
+			this.gapStart = length;
+			this.left = NULL_CHUNK;
+			this.right = NULL_CHUNK;
+		}
+
+		void updateHeight() {
+			this.height = 1 + Math.max(this.left.height, this.right.height);
+		}
+
+		// makes room for at least capacity characters, growing by doubling
+		void ensureCapacity(int capacity) {
+			if (this.chars.length < capacity) {
+				char[] grown = new char[Math.min(CHUNK_SIZE, Math.max(capacity, 2 * this.chars.length))];
+				int after = this.length - this.gapStart;
+				System.arraycopy(this.chars, 0, grown, 0, this.gapStart);
+				System.arraycopy(this.chars, this.chars.length - after, grown, grown.length - after, after);
+				this.chars = grown;
+			}
+		}
+		
+		char charAt(int i) {
+			return (i < this.gapStart) ? this.chars[i] : this.chars[i + this.chars.length - this.length];
+		}
+		
+		// Moves the gap so it starts at, shifting only the characters between
+		// where it was and where it goes.
+		void moveGap(int at) {
+			int gap = this.chars.length - this.length;
+			if (at < this.gapStart)
+				System.arraycopy(this.chars, at, this.chars, at + gap, this.gapStart - at);
+			else
+				System.arraycopy(this.chars, this.gapStart + gap, this.chars, this.gapStart, at - this.gapStart);
+			this.gapStart = at;
+		}
+		
+		// Inserts src[offset..offset + count) at, which must fit in the chunk.
+		void insert(int at, char[] src, int offset, int count) {
+			ensureCapacity(this.length + count);
+			moveGap(at);
+			System.arraycopy(src, offset, this.chars, at, count);
+			this.gapStart += count;
+			this.length += count;
+		}
+		
+		// Removes and returns the character at, which the gap swallows.
+		char remove(int at) {
+			moveGap(at);
+			char removed = this.chars[at + this.chars.length - this.length];
+			this.length--;
+			return removed;
+		}
+		
+		// Keeps only the first length characters, in an array cut down to
+		// fit them.
+		void truncate(int length) {
+			moveGap(length);
+			this.length = length;
+			int capacity = Math.max(length, 16);
+			if (this.chars.length > capacity)
+				this.chars = Arrays.copyOf(this.chars, capacity);
+		}
+		
+		// Copies characters from to to - 1 of this chunk into dst.
+		void copyChars(int from, int to, char[] dst, int dstBegin) {
+			int gap = this.chars.length - this.length;
+			if (from < this.gapStart) {
+				int before = Math.min(to, this.gapStart) - from;
+				System.arraycopy(this.chars, from, dst, dstBegin, before);
+				dstBegin += before;
+				from += before;
+			}
+			if (from < to)
+				System.arraycopy(this.chars, from + gap, dst, dstBegin, to - from);
+		}
+		
+		// this chunk's characters without the gap, in an array of their own
+		char[] toCharArray() {
+			char[] chars = new char[this.length];
+			copyChars(0, this.length, chars, 0);
+			return chars;
+		}
+
+		/*
+		 * Copies the characters of this subtree whose positions fall in
+		 * [from, to) into dst, where offset is the position of the subtree's
+		 * first character, like Node.getChars.
+		 */
+		void getChars(int offset, int from, int to, char[] dst, int dstBegin) {
+			if (this == NULL_CHUNK)
+				return;
+			int start = offset + this.rank;
+			int end = start + this.length;
+			if (from < start)
+				this.left.getChars(offset, from, to, dst, dstBegin);
+			int copyFrom = Math.max(from, start);
+			int copyTo = Math.min(to, end);
+			if (copyFrom < copyTo)
+				copyChars(copyFrom - start, copyTo - start, dst, dstBegin + copyFrom - from);
+			if (end < to)
+				this.right.getChars(end, from, to, dst, dstBegin);
+		}
+
+		/*
+		 * Builds a perfectly balanced subtree from chunks begin to end - 1 of
+		 * s, where chunk i starts at bound(i), by the same index arithmetic as
+		 * Node.build.
+		 */
+		static Chunk build(CharSequence s, int chunks, int begin, int end) {
+			if (begin >= end)
+				return NULL_CHUNK;
+			int middle = begin + (end - begin) / 2;
+			int start = bound(s.length(), chunks, middle);
+			int length = bound(s.length(), chunks, middle + 1) - start;
+			char[] chars = new char[length];
+			for (int i = 0; i < length; i++)
+				chars[i] = s.charAt(start + i);
+			Chunk chunk = new Chunk(chars, length);
+			chunk.left = build(s, chunks, begin, middle);
+			chunk.right = build(s, chunks, middle + 1, end);
+			chunk.rank = start - bound(s.length(), chunks, begin);
+			chunk.updateHeight();
+			return chunk;
+		}
+
+		// where chunk i of n characters cut into the given number of chunks starts
+		static int bound(int n, int chunks, int i) {
+			return (int) ((long) i * n / chunks);
+		}
+
+		/*
+		 * Copies this subtree, chunks and all, the way Node.copyHelper does.
+		 */
+		Chunk deepCopy() {
+			if (this == NULL_CHUNK)
+				return NULL_CHUNK;
+			Chunk copy = new Chunk(toCharArray(), this.length);
+			copy.left = this.left.deepCopy();
+			copy.right = this.right.deepCopy();
+			copy.rank = this.rank;
+			copy.height = this.height;
+			return copy;
+		}
+
+	}
+
+	private Chunk root;
+	private int rotationCount;
+	private int size; // number of characters
+
+	// Set by removeFirst to the chunk it took out, and by removeChar to the
+	// chunk it took a character from along with that chunk's first position.
+	private Chunk detached;
+	private Chunk touched;
+	private int touchedStart;
+	// Set by split to the part of the subtree after the split position.
+	private Chunk splitRight;
+
+	private final char[] oneChar = new char[1];
+
+	/**
+	 * Construct an empty tree
+	 */
+	public ChunkedEditTree() {
+		this.root = Chunk.NULL_CHUNK;
+	}
+
+	/**
+	 * Construct a tree holding just ch
+	 *
+	 * @param ch
+	 */
+	public ChunkedEditTree(char ch) {
+		this();
+		add(ch);
+	}
+
+	/**
+	 * Construct a tree holding s, with every chunk as full as it can be
+	 * evenly made, in O(N) time.
+	 *
+	 * @param s
+	 */
+	public ChunkedEditTree(CharSequence s) {
+		int chunks = (s.length() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		this.root = Chunk.build(s, chunks, 0, chunks);
+		this.size = s.length();
+	}
+
+	/**
+	 * Make this tree a copy of e, with all new chunks, but the same shape
+	 * and contents.
+	 *
+	 * @param e
+	 */
+	public ChunkedEditTree(ChunkedEditTree e) {
+		this.root = e.root.deepCopy();
+		this.size = e.size;
+		this.rotationCount = e.rotationCount;
+	}
+
+	/**
+	 * @return number of rotations since tree was created.
+	 */
+	public int totalRotationCount() {
+		return this.rotationCount;
+	}
+
+	/**
+	 * @return the height of this tree, counted in chunks
+	 */
+	public int height() {
+		return this.root.height;
+	}
+
+	/**
+	 * @return the number of characters in this tree
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public String toString() {
+		char[] chars = new char[this.size];
+		this.root.getChars(0, 0, this.size, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * @param ch
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char ch) {
+		add(ch, this.size);
+	}
+
+	/**
+	 * @param ch
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 */
+	public void add(char ch, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		this.oneChar[0] = ch;
+		this.root = insert(this.root, pos, this.oneChar, 0, 1);
+		this.size++;
+	}
+
+	/**
+	 * Inserts all of s so that its first character ends up at position pos.
+	 * Up to a chunk's worth goes straight into the chunk at pos; more is built
+	 * into its own tree and joined in with split and concatenate.
+	 *
+	 * @param s
+	 *            the characters to add
+	 * @param pos
+	 *            inorder position of the first added character
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 */
+	public void add(CharSequence s, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		if (s.length() == 0)
+			return;
+		if (s.length() <= CHUNK_SIZE) {
+			char[] chars = s.toString().toCharArray();
+			this.root = insert(this.root, pos, chars, 0, chars.length);
+			this.size += chars.length;
+			return;
+		}
+		ChunkedEditTree rest = this.split(pos);
+		this.concatenate(new ChunkedEditTree(s));
+		this.concatenate(rest);
+	}
+
+	/*
+	 * Inserts src[offset..offset + count), at most a chunk's worth, at pos
+	 * within node's subtree and returns the subtree's new root. The
+	 * characters go into the chunk that holds pos, or ends at it. If that
+	 * chunk overflows, its characters and the new ones are shared out
+	 * evenly between it and a new chunk that becomes its successor.
+	 */
+	private Chunk insert(Chunk node, int pos, char[] src, int offset, int count) {
+		if (node == Chunk.NULL_CHUNK) {
+			char[] chars = new char[Math.max(count, 16)];
+			System.arraycopy(src, offset, chars, 0, count);
+			return new Chunk(chars, count);
+		}
+		if (pos < node.rank) {
+			node.rank += count;
+			node.left = insert(node.left, pos, src, offset, count);
+			return rebalance(node);
+		}
+		if (pos > node.rank + node.length) {
+			node.right = insert(node.right, pos - node.rank - node.length, src, offset, count);
+			return rebalance(node);
+		}
+		int at = pos - node.rank;
+		int total = node.length + count;
+		if (total <= CHUNK_SIZE) {
+			node.insert(at, src, offset, count);
+			return node;
+		}
+		char[] all = new char[total];
+		node.copyChars(0, at, all, 0);
+		System.arraycopy(src, offset, all, at, count);
+		node.copyChars(at, node.length, all, at + count);
+		int half = total / 2;
+		node.chars = Arrays.copyOf(all, half);
+		node.length = half;
+		node.gapStart = half;
+		Chunk upper = new Chunk(Arrays.copyOfRange(all, half, total), total - half);
+		node.right = insertFirst(node.right, upper);
+		return rebalance(node);
+	}
+
+	// Puts chunk before everything else in node's subtree.
+	private Chunk insertFirst(Chunk node, Chunk chunk) {
+		if (node == Chunk.NULL_CHUNK)
+			return chunk;
+		node.rank += chunk.length;
+		node.left = insertFirst(node.left, chunk);
+		return rebalance(node);
+	}
+
+	/**
+	 * @param pos
+	 *            position of character to delete from this tree
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size)
+			throw new IndexOutOfBoundsException();
+		this.root = removeChar(this.root, pos, 0);
+		this.size--;
+		char deleted = this.oneChar[0];
+		// A chunk that got too small is taken out and its characters put
+		// back into whichever neighbour the insert lands them in.
+		Chunk small = this.touched;
+		this.touched = null;
+		if (small.length > 0 && small.length < MIN_CHUNK_SIZE && small.length < this.size) {
+			int start = this.touchedStart;
+			this.root = removeChunk(this.root, start);
+			char[] chars = small.toCharArray();
+			this.root = insert(this.root, start, chars, 0, chars.length);
+		}
+		return deleted;
+	}
+
+	/*
+	 * Deletes the character at pos within node's subtree, whose first
+	 * character is at offset in the whole tree, leaves it in oneChar and
+	 * returns the subtree's new root. A chunk left empty is unlinked.
+	 */
+	private Chunk removeChar(Chunk node, int pos, int offset) {
+		if (pos < node.rank) {
+			node.rank--;
+			node.left = removeChar(node.left, pos, offset);
+			return rebalance(node);
+		}
+		if (pos >= node.rank + node.length) {
+			int skipped = node.rank + node.length;
+			node.right = removeChar(node.right, pos - skipped, offset + skipped);
+			return rebalance(node);
+		}
+		int at = pos - node.rank;
+		this.oneChar[0] = node.remove(at);
+		this.touched = node;
+		this.touchedStart = offset + node.rank;
+		if (node.length == 0)
+			return unlink(node);
+		return node;
+	}
+
+	/*
+	 * Takes the whole chunk that starts at pos out of node's subtree and
+	 * returns the subtree's new root.
+	 */
+	private Chunk removeChunk(Chunk node, int pos) {
+		if (pos < node.rank) {
+			node.left = removeChunk(node.left, pos);
+			node.rank -= this.detached.length;
+			return rebalance(node);
+		}
+		if (pos > node.rank) {
+			node.right = removeChunk(node.right, pos - node.rank - node.length);
+			return rebalance(node);
+		}
+		this.detached = node;
+		return unlink(node);
+	}
+
+	/*
+	 * Returns what should take node's place once node is gone: a child if
+	 * it has only one, otherwise its successor chunk, taken out of the right
+	 * subtree.
+	 */
+	private Chunk unlink(Chunk node) {
+		if (node.left == Chunk.NULL_CHUNK)
+			return node.right;
+		if (node.right == Chunk.NULL_CHUNK)
+			return node.left;
+		Chunk right = removeFirst(node.right);
+		Chunk successor = this.detached;
+		successor.left = node.left;
+		successor.right = right;
+		successor.rank = node.rank;
+		this.detached = node;
+		return rebalance(successor);
+	}
+
+	// Takes the first chunk out of node's subtree, leaving it in detached.
+	private Chunk removeFirst(Chunk node) {
+		if (node.left == Chunk.NULL_CHUNK) {
+			this.detached = node;
+			return node.right;
+		}
+		node.left = removeFirst(node.left);
+		node.rank -= this.detached.length;
+		return rebalance(node);
+	}
+
+	/**
+	 * @param pos
+	 *            position in the tree
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size)
+			throw new IndexOutOfBoundsException();
+		Chunk node = this.root;
+		while (true) {
+			if (pos < node.rank) {
+				node = node.left;
+			} else if (pos < node.rank + node.length) {
+				return node.charAt(pos - node.rank);
+			} else {
+				pos -= node.rank + node.length;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless both pos and pos+length-1 are legitimate indexes
+	 *             within this tree.
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (pos > this.size - 1 || pos < 0 || length < 0 || pos + length > this.size)
+			throw new IndexOutOfBoundsException();
+		char[] chars = new char[length];
+		this.root.getChars(0, pos, pos + length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Puts other at the end of this tree and makes other empty, joining the
+	 * two in time proportional to the difference in their heights. The
+	 * chunks that meet at the seam are merged if they fit in one.
+	 *
+	 * @param other
+	 * @throws IllegalArgumentException
+	 *             if this == other
+	 */
+	public void concatenate(ChunkedEditTree other) throws IllegalArgumentException {
+		if (this == other)
+			throw new IllegalArgumentException();
+		if (other.size == 0)
+			return;
+		int seam = this.size;
+		if (this.size == 0) {
+			this.root = other.root;
+		} else {
+			Chunk rest = other.removeFirst(other.root);
+			Chunk pivot = other.detached;
+			other.detached = null;
+			this.root = join(this.root, this.size, pivot, rest);
+		}
+		this.size += other.size;
+		other.root = Chunk.NULL_CHUNK;
+		other.size = 0;
+		mergeAt(seam);
+	}
+
+	/**
+	 * @param pos
+	 *            where to split this tree
+	 * @return a new tree containing all of the characters of this tree whose
+	 *         positions are >= pos. They are removed from this tree.
+	 * @throws IndexOutOfBoundsException
+	 */
+	public ChunkedEditTree split(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		ChunkedEditTree rest = new ChunkedEditTree();
+		this.root = split(this.root, this.size, pos);
+		rest.root = this.splitRight;
+		rest.size = this.size - pos;
+		this.splitRight = null;
+		this.size = pos;
+		// the halves of a chunk cut in two are merged into their neighbours
+		// when they can be, so repeated splits do not leave small chunks
+		if (this.size > 0)
+			mergeAt(this.size - chunkAt(this.size - 1).length);
+		if (rest.size > 0)
+			rest.mergeAt(rest.chunkAt(0).length);
+		return rest;
+	}
+
+	/*
+	 * Splits node's subtree, of size characters, at pos and returns the part
+	 * before it, leaving the part after it in splitRight. A chunk that pos
+	 * falls inside of is cut in two. Like EditTree.split, the pieces along
+	 * the path are joined back up, which adds up to O(log N).
+	 */
+	private Chunk split(Chunk node, int size, int pos) {
+		if (node == Chunk.NULL_CHUNK) {
+			this.splitRight = Chunk.NULL_CHUNK;
+			return Chunk.NULL_CHUNK;
+		}
+		Chunk left = node.left;
+		Chunk right = node.right;
+		int leftSize = node.rank;
+		int rightSize = size - node.rank - node.length;
+		if (pos <= node.rank) {
+			Chunk before = split(left, leftSize, pos);
+			this.splitRight = join(this.splitRight, leftSize - pos, node, right);
+			return before;
+		}
+		if (pos >= node.rank + node.length) {
+			Chunk after = split(right, rightSize, pos - node.rank - node.length);
+			Chunk afterRight = this.splitRight;
+			Chunk before = join(left, leftSize, node, after);
+			this.splitRight = afterRight;
+			return before;
+		}
+		int at = pos - node.rank;
+		char[] chars = new char[node.length - at];
+		node.copyChars(at, node.length, chars, 0);
+		Chunk tail = new Chunk(chars, chars.length);
+		node.truncate(at);
+		this.splitRight = join(Chunk.NULL_CHUNK, 0, tail, right);
+		return join(left, leftSize, node, Chunk.NULL_CHUNK);
+	}
+
+	/**
+	 * @param start
+	 *            position of the first character to delete
+	 * @param length
+	 *            number of characters to delete
+	 * @return a tree holding the deleted characters, which are removed from
+	 *         this one
+	 * @throws IndexOutOfBoundsException
+	 *             unless both start and start+length-1 are in range for this
+	 *             tree, which like EditTree.delete does not reach its last
+	 *             character.
+	 */
+	public ChunkedEditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		if (start < 0 || start + length >= this.size)
+			throw new IndexOutOfBoundsException(
+					(start < 0) ? "negative first argument to delete"
+							: "delete range extends past end of string");
+		ChunkedEditTree deleted = this.split(start);
+		ChunkedEditTree rest = deleted.split(length);
+		this.concatenate(rest);
+		return deleted;
+	}
+
+	/**
+	 * @param s
+	 *            the string to look for
+	 * @return the position in this tree of the first occurrence of s; -1 if s
+	 *         does not occur
+	 */
+	public int find(String s) {
+		return find(s, 0);
+	}
+
+	/**
+	 * @param s
+	 *            the string to search for
+	 * @param pos
+	 *            the position in the tree to begin the search
+	 * @return the position in this tree of the first occurrence of s that does
+	 *         not occur before position pos; -1 if s does not occur
+	 */
+	public int find(String s, int pos) {
+		char[] chars = new char[this.size];
+		this.root.getChars(0, 0, this.size, chars, 0);
+		return EditTree.find(chars, s, pos);
+	}
+
+	// the chunk that holds the character at pos
+	private Chunk chunkAt(int pos) {
+		Chunk node = this.root;
+		while (true) {
+			if (pos < node.rank) {
+				node = node.left;
+			} else if (pos < node.rank + node.length) {
+				return node;
+			} else {
+				pos -= node.rank + node.length;
+				node = node.right;
+			}
+		}
+	}
+
+	/*
+	 * Merges the chunk that ends at pos with the one that starts there if
+	 * they fit in one. If they do not but one of them is below
+	 * MIN_CHUNK_SIZE, their characters are shared out evenly between two
+	 * chunks instead. Does nothing unless there are chunks on both sides.
+	 */
+	private void mergeAt(int pos) {
+		if (pos <= 0 || pos >= this.size)
+			return;
+		Chunk before = chunkAt(pos - 1);
+		Chunk after = chunkAt(pos);
+		int total = before.length + after.length;
+		if (total > CHUNK_SIZE && before.length >= MIN_CHUNK_SIZE && after.length >= MIN_CHUNK_SIZE)
+			return;
+		int start = pos - before.length;
+		this.root = removeChunk(this.root, pos);
+		this.root = removeChunk(this.root, start);
+		this.detached = null;
+		char[] all = new char[total];
+		before.copyChars(0, before.length, all, 0);
+		after.copyChars(0, after.length, all, before.length);
+		if (total <= CHUNK_SIZE) {
+			this.root = insertChunk(this.root, start, new Chunk(all, total));
+			return;
+		}
+		int half = total / 2;
+		this.root = insertChunk(this.root, start, new Chunk(Arrays.copyOf(all, half), half));
+		this.root = insertChunk(this.root, start + half,
+				new Chunk(Arrays.copyOfRange(all, half, total), total - half));
+	}
+
+	// Puts chunk into node's subtree so that it starts at pos, which must be
+	// where one chunk ends and the next begins.
+	private Chunk insertChunk(Chunk node, int pos, Chunk chunk) {
+		if (node == Chunk.NULL_CHUNK)
+			return chunk;
+		if (pos <= node.rank) {
+			node.rank += chunk.length;
+			node.left = insertChunk(node.left, pos, chunk);
+		} else {
+			node.right = insertChunk(node.right, pos - node.rank - node.length, chunk);
+		}
+		return rebalance(node);
+	}
+
+	/**
+	 * @return The root of this tree.
+	 */
+	Chunk getRoot() {
+		return this.root;
+	}
+
+	/*
+	 * Joins left, pivot and right, in that order, like Node.join, with ranks
+	 * counted in characters. leftSize is the number of characters in left.
+	 */
+	private Chunk join(Chunk left, int leftSize, Chunk pivot, Chunk right) {
+		if (left.height > right.height + 1) {
+			left.right = join(left.right, leftSize - left.rank - left.length, pivot, right);
+			return rebalance(left);
+		}
+		if (right.height > left.height + 1) {
+			right.rank += leftSize + pivot.length;
+			right.left = join(left, leftSize, pivot, right.left);
+			return rebalance(right);
+		}
+		pivot.left = left;
+		pivot.right = right;
+		pivot.rank = leftSize;
+		pivot.updateHeight();
+		return pivot;
+	}
+
+	/*
+	 * Rotates node if one side has become two taller than the other, double
+	 * rotating when the taller grandchild is on the inside, and returns the
+	 * new root of its subtree.
+	 */
+	private Chunk rebalance(Chunk node) {
+		int difference = node.left.height - node.right.height;
+		if (difference > 1) {
+			if (node.left.left.height < node.left.right.height)
+				node.left = rotateLeft(node.left);
+			return rotateRight(node);
+		}
+		if (difference < -1) {
+			if (node.right.right.height < node.right.left.height)
+				node.right = rotateRight(node.right);
+			return rotateLeft(node);
+		}
+		node.updateHeight();
+		return node;
+	}
+
+	private Chunk rotateRight(Chunk node) {
+		this.rotationCount++;
+		Chunk newRoot = node.left;
+		node.left = newRoot.right;
+		newRoot.right = node;
+		node.rank -= newRoot.rank + newRoot.length;
+		node.updateHeight();
+		newRoot.updateHeight();
+		return newRoot;
+	}
+
+	private Chunk rotateLeft(Chunk node) {
+		this.rotationCount++;
+		Chunk newRoot = node.right;
+		node.right = newRoot.left;
+		newRoot.left = node;
+		newRoot.rank += node.rank + node.length;
+		node.updateHeight();
+		newRoot.updateHeight();
+		return newRoot;
+	}
+
+}
@@ -0,0 +1,241 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for ChunkedEditTree, checked against a StringBuilder holding the
+ * same text, and for the shape of its tree and chunks after every change.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+public class ChunkedEditTreeTest {
+
+	// returns the number of characters in the subtree, checking every chunk
+	private static int check(ChunkedEditTree.Chunk node) {
+		if (node == ChunkedEditTree.Chunk.NULL_CHUNK)
+			return 0;
+		int left = check(node.left);
+		int right = check(node.right);
+		assertEquals(left, node.rank);
+		assertEquals(1 + Math.max(node.left.height, node.right.height), node.height);
+		assertTrue(Math.abs(node.left.height - node.right.height) <= 1);
+		assertTrue(node.length > 0 && node.length <= ChunkedEditTree.CHUNK_SIZE);
+		assertTrue(node.gapStart >= 0 && node.gapStart <= node.length && node.length <= node.chars.length);
+		return left + node.length + right;
+	}
+
+	private static int countChunks(ChunkedEditTree.Chunk node) {
+		if (node == ChunkedEditTree.Chunk.NULL_CHUNK)
+			return 0;
+		return countChunks(node.left) + 1 + countChunks(node.right);
+	}
+
+	private static void check(ChunkedEditTree t, StringBuilder model) {
+		assertEquals(model.length(), check(t.getRoot()));
+		assertEquals(model.length(), t.size());
+		assertEquals(model.toString(), t.toString());
+	}
+
+	@Test
+	public void testSmallEdits() {
+		ChunkedEditTree t = new ChunkedEditTree();
+		t.add('b');
+		t.add('d');
+		t.add('a', 0);
+		t.add('c', 2);
+		assertEquals("abcd", t.toString());
+		assertEquals('c', t.get(2));
+		assertEquals("bc", t.get(1, 2));
+		assertEquals('b', t.delete(1));
+		assertEquals("acd", t.toString());
+		assertEquals(1, t.find("cd"));
+		try {
+			t.get(3);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.get(1, -1);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			// like EditTree.delete, the range cannot run to the last character
+			t.delete(1, t.size() - 1);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		assertEquals("acd", t.toString());
+	}
+
+	@Test
+	public void testTypingFillsChunks() {
+		ChunkedEditTree t = new ChunkedEditTree();
+		StringBuilder model = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			char ch = (char) ('a' + i % 26);
+			t.add(ch);
+			model.append(ch);
+		}
+		check(t, model);
+		// chunks are at least half full after splitting, so the tree has
+		// at most 2N / CHUNK_SIZE of them
+		assertTrue(t.height() <= 1.44 * Math.log(2 * 100000 / ChunkedEditTree.CHUNK_SIZE + 2) / Math.log(2));
+	}
+
+	@Test
+	public void testTypingAndBackspacingAtACursor() {
+		// Types and backspaces in bursts at a cursor that sometimes jumps,
+		// so the gaps of chunks are moved both ways and left behind.
+		Random random = new Random(230);
+		StringBuilder model = new StringBuilder();
+		for (int i = 0; i < 2000; i++)
+			model.append((char) ('a' + i % 26));
+		ChunkedEditTree t = new ChunkedEditTree(model);
+		int cursor = 1000;
+		for (int burst = 0; burst < 2000; burst++) {
+			if (random.nextInt(4) == 0)
+				cursor = random.nextInt(model.length() + 1);
+			int keys = random.nextInt(20);
+			for (int i = 0; i < keys; i++) {
+				if (cursor > 0 && random.nextInt(3) == 0) {
+					cursor--;
+					assertEquals(model.charAt(cursor), t.delete(cursor));
+					model.deleteCharAt(cursor);
+				} else {
+					char ch = (char) ('A' + random.nextInt(26));
+					t.add(ch, cursor);
+					model.insert(cursor, ch);
+					cursor++;
+				}
+			}
+			if (cursor > 0)
+				assertEquals(model.charAt(cursor - 1), t.get(cursor - 1));
+			if (burst % 100 == 0)
+				check(t, model);
+		}
+		check(t, model);
+	}
+
+	@Test
+	public void testRandomEditsMatchModel() {
+		Random random = new Random(230);
+		ChunkedEditTree t = new ChunkedEditTree();
+		StringBuilder model = new StringBuilder();
+		for (int i = 0; i < 30000; i++) {
+			int op = random.nextInt(10);
+			if (op < 4 || model.length() == 0) {
+				char ch = (char) ('a' + random.nextInt(26));
+				int pos = random.nextInt(model.length() + 1);
+				t.add(ch, pos);
+				model.insert(pos, ch);
+			} else if (op < 7) {
+				int pos = random.nextInt(model.length());
+				assertEquals(model.charAt(pos), t.delete(pos));
+				model.deleteCharAt(pos);
+			} else if (op < 8) {
+				StringBuilder s = new StringBuilder();
+				int length = random.nextInt(random.nextBoolean() ? 20 : 2000);
+				for (int j = 0; j < length; j++)
+					s.append((char) ('A' + random.nextInt(26)));
+				int pos = random.nextInt(model.length() + 1);
+				t.add(s, pos);
+				model.insert(pos, s);
+			} else if (op < 9) {
+				int start = random.nextInt(model.length());
+				int length = random.nextInt(Math.min(1500, model.length() - start - 1) + 1);
+				assertEquals(model.substring(start, start + length), t.delete(start, length).toString());
+				model.delete(start, start + length);
+			} else {
+				int pos = random.nextInt(model.length() + 1);
+				ChunkedEditTree rest = t.split(pos);
+				assertEquals(model.substring(pos), rest.toString());
+				assertEquals(model.substring(0, pos), t.toString());
+				t.concatenate(rest);
+				assertEquals(0, rest.size());
+			}
+			if (i % 100 == 0)
+				check(t, model);
+		}
+		check(t, model);
+		for (int i = 0; i < 1000 && model.length() > 0; i++) {
+			int pos = random.nextInt(model.length());
+			assertEquals(model.charAt(pos), t.get(pos));
+			int length = random.nextInt(model.length() - pos + 1);
+			assertEquals(model.substring(pos, pos + length), t.get(pos, length));
+		}
+	}
+
+	@Test
+	public void testSplitAndConcatenateKeepChunksFull() {
+		Random random = new Random(230);
+		StringBuilder model = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+			model.append((char) ('a' + random.nextInt(26)));
+		ChunkedEditTree t = new ChunkedEditTree(model);
+		for (int i = 0; i < 20000; i++) {
+			int pos = random.nextInt(model.length() + 1);
+			if (i % 2 == 0) {
+				t.concatenate(t.split(pos));
+			} else {
+				// replace five characters with five somewhere else
+				int start = Math.min(pos, model.length() - 6);
+				t.delete(start, 5);
+				model.delete(start, start + 5);
+				int to = random.nextInt(model.length() + 1);
+				t.add("abcde", to);
+				model.insert(to, "abcde");
+			}
+			if (i % 1000 == 0)
+				check(t, model);
+		}
+		check(t, model);
+		// the pieces of cut chunks are merged into their neighbours, so
+		// chunks stay at least half full on average and the tree has at most
+		// 2N / CHUNK_SIZE of them
+		assertTrue(countChunks(t.getRoot()) <= 2 * model.length() / ChunkedEditTree.CHUNK_SIZE);
+	}
+
+	@Test
+	public void testDeletingEverything() {
+		Random random = new Random(230);
+		StringBuilder model = new StringBuilder();
+		for (int i = 0; i < 5000; i++)
+			model.append((char) ('a' + random.nextInt(26)));
+		ChunkedEditTree t = new ChunkedEditTree(model);
+		check(t, model);
+		while (model.length() > 0) {
+			int pos = random.nextInt(model.length());
+			assertEquals(model.charAt(pos), t.delete(pos));
+			model.deleteCharAt(pos);
+			if (model.length() % 250 == 0)
+				check(t, model);
+		}
+		assertEquals(-1, t.height());
+	}
+
+	@Test
+	public void testCopyAndBuild() {
+		StringBuilder model = new StringBuilder();
+		for (int i = 0; i < 3000; i++)
+			model.append((char) ('a' + i % 7));
+		ChunkedEditTree t = new ChunkedEditTree(model);
+		ChunkedEditTree copy = new ChunkedEditTree(t);
+		t.delete(0, 1000);
+		check(copy, model);
+		model.delete(0, 1000);
+		check(t, model);
+		assertEquals("", new ChunkedEditTree("").toString());
+		assertEquals("x", new ChunkedEditTree('x').toString());
+	}
+
+}
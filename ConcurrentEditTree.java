@@ -0,0 +1,332 @@
+package editortrees;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * An EditTree that can be shared between threads, guarded by a StampedLock.
+ * Edits take the write lock. Reads first run optimistically without any
+ * lock and keep their result only if no edit started in the meantime;
+ * otherwise they retry, and after a few failures take the read lock.
+ *
+ * An optimistic read can see the tree halfway through an edit, so it never
+ * uses the tree's finger, which moves on every lookup. Its walks are also
+ * bounded in steps and depth, so a torn view makes the read give up rather
+ * than loop or run off the end of an array.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+
+public class ConcurrentEditTree {
+
+	private static final int OPTIMISTIC_TRIES = 3;
+	private static final int MAX_DEPTH = 64; // more than any AVL tree of up to 2^31 nodes
+
+	private final EditTree tree;
+	private final StampedLock lock = new StampedLock();
+
+	/**
+	 * Construct an empty tree
+	 */
+	public ConcurrentEditTree() {
+		this.tree = new EditTree();
+	}
+
+	/**
+	 * Construct a tree holding s
+	 *
+	 * @param s
+	 */
+	public ConcurrentEditTree(CharSequence s) {
+		this.tree = new EditTree(s);
+	}
+
+	/**
+	 * @param ch
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char ch) {
+		long stamp = this.lock.writeLock();
+		try {
+			this.tree.add(ch);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param ch
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public void add(char ch, int pos) throws IndexOutOfBoundsException {
+		long stamp = this.lock.writeLock();
+		try {
+			this.tree.add(ch, pos);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param s
+	 *            the characters to add
+	 * @param pos
+	 *            inorder position of the first added character
+	 * @throws IndexOutOfBoundsException
+	 */
+	public void add(CharSequence s, int pos) throws IndexOutOfBoundsException {
+		long stamp = this.lock.writeLock();
+		try {
+			this.tree.add(s, pos);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param pos
+	 *            position of character to delete
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		long stamp = this.lock.writeLock();
+		try {
+			return this.tree.delete(pos);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param start
+	 *            position of the first character to delete
+	 * @param length
+	 *            number of characters to delete
+	 * @return a tree holding the deleted characters
+	 * @throws IndexOutOfBoundsException
+	 */
+	public EditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		long stamp = this.lock.writeLock();
+		try {
+			return this.tree.delete(start, length);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param pos
+	 *            where to split
+	 * @return a new tree holding the characters from pos on, which are
+	 *         removed from this tree
+	 * @throws IndexOutOfBoundsException
+	 */
+	public EditTree split(int pos) throws IndexOutOfBoundsException {
+		long stamp = this.lock.writeLock();
+		try {
+			return this.tree.split(pos);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param other
+	 *            tree to add to the end of this one, which is made empty. It
+	 *            must not be used by another thread meanwhile.
+	 */
+	public void concatenate(EditTree other) {
+		long stamp = this.lock.writeLock();
+		try {
+			this.tree.concatenate(other);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @return the number of characters in this tree
+	 */
+	public int size() {
+		long stamp = this.lock.tryOptimisticRead();
+		int size = this.tree.size();
+		if (this.lock.validate(stamp))
+			return size;
+		stamp = this.lock.readLock();
+		try {
+			return this.tree.size();
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @param pos
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		for (int i = 0; i < OPTIMISTIC_TRIES; i++) {
+			long stamp = this.lock.tryOptimisticRead();
+			if (stamp == 0)
+				continue;
+			int size = this.tree.size();
+			Node node = (pos >= 0 && pos < size) ? findNode(this.tree.getRoot(), pos) : null;
+			char ch = (node != null) ? node.element : 0;
+			if (this.lock.validate(stamp)) {
+				if (pos < 0 || pos >= size)
+					throw new IndexOutOfBoundsException();
+				if (node != null)
+					return ch;
+			}
+		}
+		long stamp = this.lock.readLock();
+		try {
+			if (pos < 0 || pos >= this.tree.size())
+				throw new IndexOutOfBoundsException();
+			return this.tree.getRoot().getNode(pos).element;
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @param pos
+	 *            location of the first character
+	 * @param length
+	 *            number of characters
+	 * @return the characters from pos to pos + length - 1
+	 * @throws IndexOutOfBoundsException
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		for (int i = 0; i < OPTIMISTIC_TRIES; i++) {
+			long stamp = this.lock.tryOptimisticRead();
+			if (stamp == 0)
+				continue;
+			int size = this.tree.size();
+			boolean inRange = pos >= 0 && pos <= size - 1 && length >= 0 && pos + length <= size;
+			char[] chars = inRange ? new char[length] : null;
+			boolean copied = inRange && copyRange(this.tree.getRoot(), pos, chars);
+			if (this.lock.validate(stamp)) {
+				if (!inRange)
+					throw new IndexOutOfBoundsException();
+				if (copied)
+					return new String(chars);
+			}
+		}
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.get(pos, length);
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @param s
+	 *            the string to look for
+	 * @param pos
+	 *            the position in the tree to begin the search
+	 * @return the position of the first occurrence of s at or after pos; -1
+	 *         if there is none
+	 */
+	public int find(String s, int pos) {
+		char[] chars = null;
+		for (int i = 0; i < OPTIMISTIC_TRIES && chars == null; i++) {
+			long stamp = this.lock.tryOptimisticRead();
+			if (stamp == 0)
+				continue;
+			char[] copy = new char[this.tree.size()];
+			if (copyRange(this.tree.getRoot(), 0, copy) && this.lock.validate(stamp))
+				chars = copy;
+		}
+		if (chars == null) {
+			long stamp = this.lock.readLock();
+			try {
+				chars = new char[this.tree.size()];
+				copyRange(this.tree.getRoot(), 0, chars);
+			} finally {
+				this.lock.unlockRead(stamp);
+			}
+		}
+		// the search runs on the copy, outside of any lock
+		return EditTree.find(chars, s, pos);
+	}
+
+	@Override
+	public String toString() {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.toString();
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * Walks down to the node at pos like Node.getNode, but gives up and
+	 * returns null if the walk goes deeper than any real tree could or runs
+	 * off the bottom, which can only happen while an edit is under way. A
+	 * node can even show up before its constructor's writes do, so a null
+	 * link means the same.
+	 */
+	private static Node findNode(Node node, int pos) {
+		for (int depth = 0; depth < MAX_DEPTH && node != Node.NULL_NODE && node != null; depth++) {
+			if (pos == node.rank)
+				return node;
+			if (pos < node.rank) {
+				node = node.left;
+			} else {
+				pos -= node.rank + 1;
+				node = node.right;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Fills dst with the characters from pos on, by walking down to pos and
+	 * then on in order with a stack of the nodes still to come. Returns false
+	 * instead if the tree does not hold together, which can only happen while
+	 * an edit is under way: the stack overflows, a node is missing, or the
+	 * walk takes more steps than a real tree would need.
+	 */
+	private static boolean copyRange(Node root, int pos, char[] dst) {
+		if (dst.length == 0)
+			return true;
+		Node[] stack = new Node[MAX_DEPTH];
+		int top = 0;
+		Node node = root;
+		while (true) {
+			if (node == Node.NULL_NODE || node == null || top == MAX_DEPTH)
+				return false;
+			if (pos <= node.rank) {
+				stack[top++] = node;
+				if (pos == node.rank)
+					break;
+				node = node.left;
+			} else {
+				pos -= node.rank + 1;
+				node = node.right;
+			}
+		}
+		int steps = 0;
+		int maxSteps = 2 * dst.length + 2 * MAX_DEPTH;
+		for (int i = 0; i < dst.length; i++) {
+			if (top == 0)
+				return false;
+			node = stack[--top];
+			dst[i] = node.element;
+			for (node = node.right; node != Node.NULL_NODE; node = node.left) {
+				if (node == null || top == MAX_DEPTH || ++steps > maxSteps)
+					return false;
+				stack[top++] = node;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,113 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests for ConcurrentEditTree, whose reads run optimistically while
+ * another thread edits it.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+public class ConcurrentEditTreeTest {
+
+	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+	@Test
+	public void testReadsAndWrites() {
+		ConcurrentEditTree t = new ConcurrentEditTree("hello");
+		t.add('!');
+		t.add(' ', 5);
+		t.add("world", 6);
+		assertEquals("hello world!", t.toString());
+		assertEquals(12, t.size());
+		assertEquals('w', t.get(6));
+		assertEquals("lo wo", t.get(3, 5));
+		assertEquals(6, t.find("world", 0));
+		assertEquals(-1, t.find("world", 7));
+		assertEquals('!', t.delete(11));
+		EditTree rest = t.split(5);
+		assertEquals(" world", rest.toString());
+		t.concatenate(rest);
+		assertEquals("hello world", t.toString());
+		assertEquals(-1, new ConcurrentEditTree().find("a", 0));
+		try {
+			t.get(11);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.get(8, 4);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testReadsDuringEdits() throws InterruptedException {
+		// The text is always a prefix of the alphabet repeated. The writer
+		// lengthens it, and also splits it and puts it back together, which
+		// rotates nodes everywhere while readers walk the tree.
+		final ConcurrentEditTree t = new ConcurrentEditTree();
+		final int length = 20000;
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				Random random = new Random(230);
+				for (int i = 0; i < length; i++) {
+					t.add(ALPHABET.charAt(i % ALPHABET.length()), i);
+					if (i % 10 == 0) {
+						EditTree rest = t.split(random.nextInt(i + 2));
+						t.concatenate(rest);
+					}
+				}
+			}
+		};
+		Thread[] readers = new Thread[3];
+		for (int r = 0; r < readers.length; r++) {
+			final int seed = r;
+			readers[r] = new Thread() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					while (t.size() < length && failure.get() == null) {
+						int size = t.size();
+						if (size < 10)
+							continue;
+						int pos = random.nextInt(size - 9);
+						try {
+							char ch = t.get(pos);
+							if (ch != ALPHABET.charAt(pos % ALPHABET.length()))
+								failure.set("get(" + pos + ") was " + ch);
+							String s = t.get(pos, 9);
+							for (int i = 0; i < s.length(); i++) {
+								if (s.charAt(i) != ALPHABET.charAt((pos + i) % ALPHABET.length()))
+									failure.set("get(" + pos + ", 9) was " + s);
+							}
+						} catch (IndexOutOfBoundsException e) {
+							// the text was cut short by a split for a moment
+						}
+					}
+				}
+			};
+		}
+		writer.start();
+		for (Thread reader : readers)
+			reader.start();
+		writer.join();
+		for (Thread reader : readers)
+			reader.join();
+		assertEquals(null, failure.get());
+		assertEquals(length, t.size());
+		assertEquals(0, t.find("abc", 0));
+	}
+
+}
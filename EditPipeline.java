@@ -0,0 +1,295 @@
+package editortrees;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A queue of edits in front of a SnapshotEditTree, so that any number of
+ * threads can edit one text without contending for it. Producers submit
+ * edits and get back a future. One writer thread takes whatever has queued
+ * up, applies it as a single update and publishes one new version, which
+ * completes the futures of every edit in the batch.
+ *
+ * Before a batch reaches the tree, edits that touch or overlap the run of
+ * text the previous ones changed are merged into that run, so typing or
+ * backspacing through a word costs one tree edit instead of one per key.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+
+public class EditPipeline implements AutoCloseable {
+
+	private static final int MAX_BATCH = 1024; // edits published as one version at most
+
+	private final SnapshotEditTree tree;
+	private final BlockingQueue<Edit> queue = new LinkedBlockingQueue<Edit>();
+	private final Thread writer;
+	private final Object submitLock = new Object();
+	private boolean closed; // guarded by submitLock
+
+	// Deletes length characters at pos, then inserts text there. A null
+	// text marks the end of the queue.
+	private static final class Edit {
+
+		final int pos;
+		final int length;
+		final String text;
+		final CompletableFuture<PersistentEditTree> done = new CompletableFuture<PersistentEditTree>();
+
+		Edit(int pos, int length, String text) {
+			this.pos = pos;
+			this.length = length;
+			this.text = text;
+		}
+
+	}
+
+	/**
+	 * Construct a pipeline in front of an empty text
+	 */
+	public EditPipeline() {
+		this("");
+	}
+
+	/**
+	 * Construct a pipeline in front of a text holding s, and start its writer
+	 * thread.
+	 *
+	 * @param s
+	 */
+	public EditPipeline(CharSequence s) {
+		this.tree = new SnapshotEditTree(s);
+		this.writer = new Thread(this::drain, "EditPipeline writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Never blocks.
+	 *
+	 * @return the latest published version
+	 */
+	public PersistentEditTree snapshot() {
+		return this.tree.snapshot();
+	}
+
+	/**
+	 * @param s
+	 *            the characters to add
+	 * @param pos
+	 *            inorder position of the first added character, in the text
+	 *            left by the edits submitted before this one
+	 * @return a future that completes with the first version holding this
+	 *         edit, or with an IndexOutOfBoundsException if pos is out of
+	 *         range by the time the edit is applied
+	 */
+	public CompletableFuture<PersistentEditTree> add(CharSequence s, int pos) {
+		return submit(new Edit(pos, 0, s.toString()));
+	}
+
+	/**
+	 * @param ch
+	 *            character to add
+	 * @param pos
+	 *            inorder position of the added character
+	 * @return a future like add(CharSequence, int) returns
+	 */
+	public CompletableFuture<PersistentEditTree> add(char ch, int pos) {
+		return submit(new Edit(pos, 0, String.valueOf(ch)));
+	}
+
+	/**
+	 * @param start
+	 *            position of the first character to delete
+	 * @param length
+	 *            number of characters to delete
+	 * @return a future like add(CharSequence, int) returns
+	 */
+	public CompletableFuture<PersistentEditTree> delete(int start, int length) {
+		return submit(new Edit(start, length, ""));
+	}
+
+	/**
+	 * @param start
+	 *            position of the first character to replace
+	 * @param length
+	 *            number of characters to replace
+	 * @param s
+	 *            the characters to put in their place
+	 * @return a future like add(CharSequence, int) returns
+	 */
+	public CompletableFuture<PersistentEditTree> replace(int start, int length, CharSequence s) {
+		return submit(new Edit(start, length, s.toString()));
+	}
+
+	private CompletableFuture<PersistentEditTree> submit(Edit edit) {
+		synchronized (this.submitLock) {
+			if (this.closed)
+				throw new IllegalStateException("pipeline is closed");
+			this.queue.add(edit);
+		}
+		return edit.done;
+	}
+
+	/**
+	 * Stops taking edits, waits for the ones already submitted to be
+	 * published and stops the writer thread. Being interrupted does not cut
+	 * the wait short, but the interrupt is kept for the caller to see. Called
+	 * from an action that depends on one of this pipeline's futures, which
+	 * runs on the writer thread, it returns without waiting, since the
+	 * writer cannot wait for itself; the edits still get published.
+	 */
+	@Override
+	public void close() {
+		synchronized (this.submitLock) {
+			if (!this.closed) {
+				this.closed = true;
+				this.queue.add(new Edit(0, 0, null));
+			}
+		}
+		if (Thread.currentThread() == this.writer)
+			return;
+		boolean interrupted = false;
+		while (true) {
+			try {
+				this.writer.join();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	// The writer thread's loop: wait for an edit, then take everything else
+	// already queued with it as one batch.
+	private void drain() {
+		List<Edit> batch = new ArrayList<Edit>();
+		boolean done = false;
+		while (!done) {
+			try {
+				batch.add(this.queue.take());
+			} catch (InterruptedException e) {
+				continue; // only close() may stop the writer
+			}
+			this.queue.drainTo(batch, MAX_BATCH - 1);
+			if (batch.get(batch.size() - 1).text == null) {
+				batch.remove(batch.size() - 1);
+				done = true;
+			}
+			apply(batch);
+			batch.clear();
+		}
+	}
+
+	// Futures are only completed once the update is over, so that actions
+	// depending on them never run while the tree's write lock is held.
+	private void apply(List<Edit> batch) {
+		if (batch.isEmpty())
+			return;
+		List<Edit> applied = new ArrayList<Edit>(batch.size());
+		List<Edit> outOfRange = new ArrayList<Edit>();
+		Throwable failure = null;
+		try {
+			this.tree.update(working -> {
+				Run run = new Run(working);
+				for (Edit edit : batch) {
+					if (run.add(edit))
+						applied.add(edit);
+					else
+						outOfRange.add(edit);
+				}
+				run.flush();
+			});
+		} catch (RuntimeException | Error e) {
+			failure = e;
+		}
+		for (Edit edit : outOfRange)
+			edit.done.completeExceptionally(new IndexOutOfBoundsException());
+		if (failure != null) {
+			for (Edit edit : applied)
+				edit.done.completeExceptionally(failure);
+			return;
+		}
+		PersistentEditTree version = this.tree.snapshot();
+		for (Edit edit : applied)
+			edit.done.complete(version);
+	}
+
+	/*
+	 * The edits of a batch not yet made to the tree, merged into one run:
+	 * at start, delete deleted characters of the tree, then insert inserted.
+	 * An edit whose range touches or overlaps the inserted text is folded
+	 * into the run; any other edit flushes the run to the tree and starts a
+	 * new one.
+	 */
+	private static final class Run {
+
+		private final EditTree tree;
+		private int start;
+		private int deleted;
+		private final StringBuilder inserted = new StringBuilder();
+		private boolean empty = true;
+
+		Run(EditTree tree) {
+			this.tree = tree;
+		}
+
+		// The size of the text as the edits so far leave it.
+		private int size() {
+			return this.tree.size() - this.deleted + this.inserted.length();
+		}
+
+		// Returns false, changing nothing, if edit is out of range.
+		boolean add(Edit edit) {
+			int pos = edit.pos;
+			int length = edit.length;
+			if (pos < 0 || length < 0 || pos > size() - length)
+				return false;
+			int end = this.start + this.inserted.length();
+			if (this.empty || pos > end || pos + length < this.start) {
+				flush();
+				this.start = pos;
+				this.deleted = length;
+				this.inserted.append(edit.text);
+				this.empty = false;
+				return true;
+			}
+			// Characters of edit's range before and after the inserted text
+			// are still in the tree, so they join the deleted ones.
+			int from = Math.max(pos, this.start);
+			int to = Math.min(pos + length, end);
+			this.deleted += Math.max(0, this.start - pos) + Math.max(0, pos + length - end);
+			this.inserted.delete(from - this.start, to - this.start);
+			this.inserted.insert(from - this.start, edit.text);
+			this.start = Math.min(pos, this.start);
+			return true;
+		}
+
+		void flush() {
+			if (this.empty)
+				return;
+			if (this.deleted == 1) {
+				this.tree.delete(this.start);
+			} else if (this.deleted > 0) {
+				// EditTree.delete(start, length) cannot reach the last character
+				EditTree rest = this.tree.split(this.start);
+				EditTree after = rest.split(this.deleted);
+				this.tree.concatenate(after);
+			}
+			if (this.inserted.length() == 1)
+				this.tree.add(this.inserted.charAt(0), this.start);
+			else if (this.inserted.length() > 0)
+				this.tree.add(this.inserted, this.start);
+			this.deleted = 0;
+			this.inserted.setLength(0);
+			this.empty = true;
+		}
+
+	}
+
+}
@@ -0,0 +1,157 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+/**
+ * Tests for EditPipeline, which applies edits from many threads in batches.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+public class EditPipelineTest {
+
+	@Test
+	public void testTypingAndBackspacing() throws Exception {
+		EditPipeline pipeline = new EditPipeline("ab");
+		String typed = "hello wrold";
+		for (int i = 0; i < typed.length(); i++) {
+			pipeline.add(typed.charAt(i), 1 + i);
+		}
+		pipeline.delete(9, 1);
+		pipeline.delete(8, 1);
+		pipeline.add("or", 8);
+		pipeline.replace(1, 5, "HELLO");
+		PersistentEditTree last = pipeline.add('!', 12).get();
+		assertEquals("aHELLO world!b", last.toString());
+		assertEquals("aHELLO world!b", pipeline.snapshot().toString());
+		pipeline.close();
+	}
+
+	@Test
+	public void testBadEditFailsAlone() throws Exception {
+		EditPipeline pipeline = new EditPipeline("abc");
+		CompletableFuture<PersistentEditTree> first = pipeline.add('x', 3);
+		CompletableFuture<PersistentEditTree> bad = pipeline.delete(2, 5);
+		CompletableFuture<PersistentEditTree> last = pipeline.add('y', 0);
+		try {
+			bad.get();
+			fail("Did not fail");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IndexOutOfBoundsException);
+		}
+		assertTrue(first.get().toString().endsWith("abcx"));
+		assertEquals("yabcx", last.get().toString());
+		pipeline.close();
+		try {
+			pipeline.add('z', 0);
+			fail("Did not throw IllegalStateException");
+		} catch (IllegalStateException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testRandomEditsMatchModel() throws Exception {
+		Random random = new Random(230);
+		EditPipeline pipeline = new EditPipeline();
+		StringBuilder model = new StringBuilder();
+		int pos = 0;
+		CompletableFuture<PersistentEditTree> last = null;
+		for (int i = 0; i < 20000; i++) {
+			// mostly edits next to the last one, like someone typing
+			pos = random.nextInt(10) == 0 ? random.nextInt(model.length() + 1)
+					: Math.max(0, Math.min(model.length(), pos + random.nextInt(5) - 2));
+			int length = Math.min(model.length() - pos, random.nextInt(3));
+			String text = random.nextInt(3) == 0 ? "" : "abcdef".substring(0, 1 + random.nextInt(5));
+			switch (random.nextInt(3)) {
+			case 0:
+				last = pipeline.add(text, pos);
+				model.insert(pos, text);
+				break;
+			case 1:
+				last = pipeline.delete(pos, length);
+				model.delete(pos, pos + length);
+				break;
+			default:
+				last = pipeline.replace(pos, length, text);
+				model.replace(pos, pos + length, text);
+				break;
+			}
+		}
+		assertEquals(model.toString(), last.get().toString());
+		pipeline.close();
+		assertEquals(model.toString(), pipeline.snapshot().toString());
+	}
+
+	@Test
+	public void testCloseFromDependentAction() throws Exception {
+		// the action runs on the writer thread, which must not wait for itself
+		final EditPipeline pipeline = new EditPipeline("abc");
+		CompletableFuture<PersistentEditTree> bad = pipeline.delete(5, 1);
+		CompletableFuture<Void> closed = bad.handle((version, e) -> {
+			pipeline.close();
+			return null;
+		});
+		closed.get();
+		Thread closer = new Thread(pipeline::close);
+		closer.start();
+		closer.join(10000);
+		assertTrue(!closer.isAlive());
+		assertEquals("abc", pipeline.snapshot().toString());
+	}
+
+	@Test
+	public void testCloseKeepsInterrupt() {
+		EditPipeline pipeline = new EditPipeline("abc");
+		pipeline.add('d', 3);
+		Thread.currentThread().interrupt();
+		pipeline.close();
+		// clears the flag as well, so the test runner is not interrupted
+		assertTrue(Thread.interrupted());
+		assertEquals("abcd", pipeline.snapshot().toString());
+	}
+
+	@Test
+	public void testManyProducers() throws Exception {
+		final EditPipeline pipeline = new EditPipeline();
+		final int perThread = 2000;
+		Thread[] producers = new Thread[4];
+		final List<CompletableFuture<PersistentEditTree>> futures = new ArrayList<CompletableFuture<PersistentEditTree>>();
+		for (int p = 0; p < producers.length; p++) {
+			final char ch = (char) ('a' + p);
+			producers[p] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perThread; i++) {
+						CompletableFuture<PersistentEditTree> future = pipeline.add(ch, 0);
+						synchronized (futures) {
+							futures.add(future);
+						}
+					}
+				}
+			};
+			producers[p].start();
+		}
+		for (Thread producer : producers)
+			producer.join();
+		pipeline.close();
+		for (CompletableFuture<PersistentEditTree> future : futures)
+			assertTrue(future.isDone() && !future.isCompletedExceptionally());
+		String s = pipeline.snapshot().toString();
+		assertEquals(producers.length * perThread, s.length());
+		for (int p = 0; p < producers.length; p++) {
+			char ch = (char) ('a' + p);
+			assertEquals(perThread, s.length() - s.replace(String.valueOf(ch), "").length());
+		}
+	}
+
+}
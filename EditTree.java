@@ -1,6 +1,12 @@
 package editortrees;
 
-import java.util.Stack;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Height balanced tree.
@@ -15,6 +21,36 @@ public class EditTree {
 
 	private Node root;
 	private int rotationCount;
+	private int size; // number of nodes, kept up to date so size() is O(1)
+	
+	// The path from the root down the right spine to the last node, kept
+	// between calls to add(char) so an append only touches the bottom few
+	// levels. Anything else that changes the tree clears spineValid.
+	private Node[] spine;
+	private int spineLength;
+	private boolean spineValid;
+	
+	// The path from the root to the node at the last position looked up, so
+	// the next lookup nearby can start from the lowest node on it whose
+	// subtree covers the new position instead of from the root. fingerStart
+	// and fingerEnd hold the range of positions in each node's subtree.
+	// fingerLength is 0 when the finger is stale.
+	private Node[] finger;
+	private int[] fingerStart;
+	private int[] fingerEnd;
+	private int fingerLength;
+	
+	// Set once this tree may hold nodes it shares with a copy made by copy(),
+	// so trees that were never copied skip looking for nodes to copy.
+	private boolean sharesNodes;
+	
+	// Nodes this tree has deleted, kept for it to add again. null unless
+	// setNodePoolCapacity has turned the pool on.
+	private Node.Pool pool;
+	
+	private static final int WRITE_CHUNK_SIZE = 8192; // chars handed to writeTo's Appendable at a time
+	private static final int PARALLEL_BUILD_CUTOFF = 1 << 16; // smaller ranges are built on one thread
+	private static final int PARALLEL_CONCATENATE_CUTOFF = 1 << 8; // fewer trees are joined on one thread
 	
 	/**
 	 * MILESTONE 1
@@ -34,6 +70,7 @@ public class EditTree {
 	public EditTree(char ch) {
 		this.root = new Node(ch);
 		this.rotationCount = 0;
+		this.size = 1;
 	}
 
 	/**
@@ -48,7 +85,9 @@ public class EditTree {
 			this.root = new Node(e.root.element);
 			this.root.balance = e.root.balance;
 			this.root.rank = e.root.rank;
+			this.root.height = e.root.height;
 			this.rotationCount = e.rotationCount;
+			this.size = e.size;
 			this.root.copyHelper(e.root);
 		} else {
 			this.root = Node.NULL_NODE;
@@ -56,6 +95,27 @@ public class EditTree {
 		}
 	}
 	
+	/**
+	 * Returns a copy of this tree in O(1) time. Unlike new EditTree(e), no
+	 * nodes are copied up front: the two trees share all of them, and a node
+	 * is only copied when one of the trees goes to change it, so each edit
+	 * after this copies at most the O(log N) nodes on the path it changes.
+	 * 
+	 * @return a tree with the same contents that shares this tree's nodes
+	 */
+	public EditTree copy() {
+		EditTree copy = new EditTree();
+		copy.root = this.root;
+		copy.size = this.size;
+		copy.rotationCount = this.rotationCount;
+		copy.sharesNodes = true;
+		this.sharesNodes = true;
+		this.root.markShared();
+		// the cached paths were made up of nodes this tree may no longer change
+		this.forgetPaths();
+		return copy;
+	}
+	
 	/**
 	 * MILESTONE 3
 	 * Create an EditTree whose toString is s. This can be done in O(N) time,
@@ -65,29 +125,102 @@ public class EditTree {
 	 * @param s
 	 */
 	public EditTree(String s) {
-		int indexOfRoot = s.length()/2;
-		this.root = new Node(s.charAt(indexOfRoot));
-		
-		String leftString = s.substring(0, indexOfRoot);
-		String rightString = s.substring(indexOfRoot + 1);
-		
-		root.rank = leftString.length();
-		
-		if(Math.floor(Math.log(leftString.length())/Math.log(2)) > Math.floor(Math.log(rightString.length())/Math.log(2))){
-			//height of left side is bigger
-			this.root.balance = Node.Code.LEFT;
-		}
-		else if(Math.floor(Math.log(leftString.length())/Math.log(2)) < Math.floor(Math.log(rightString.length())/Math.log(2))){
-			//height of right side is bigger
-			this.root.balance = Node.Code.RIGHT;
-		}
-		else{
-			this.root.balance = Node.Code.SAME;
-		}
-		this.root.left = new Node();
-		this.root.right = new Node();
-		root.left.stringConstructorHelper(leftString);
-		root.right.stringConstructorHelper(rightString);
+		this((CharSequence) s);
+	}
+	
+	/**
+	 * Create an EditTree whose toString is the contents of s, in O(N) time.
+	 * The tree is built perfectly balanced straight from the indexes of s, so
+	 * no substrings are copied and no rotations are done.
+	 * 
+	 * @param s
+	 */
+	public EditTree(CharSequence s) {
+		this.root = Node.build(s, 0, s.length());
+		this.rotationCount = 0;
+		this.size = s.length();
+	}
+	
+	/**
+	 * Create an EditTree whose toString is new String(chars), in O(N) time.
+	 * 
+	 * @param chars
+	 */
+	public EditTree(char[] chars) {
+		this(chars, 0, chars.length);
+	}
+	
+	/**
+	 * Create an EditTree holding the count characters of chars starting at
+	 * offset, in O(count) time.
+	 * 
+	 * @param chars
+	 * @param offset
+	 *            index of the first character to use
+	 * @param count
+	 *            number of characters to use
+	 * @throws IndexOutOfBoundsException
+	 *             if the slice is not within chars
+	 */
+	public EditTree(char[] chars, int offset, int count) throws IndexOutOfBoundsException {
+		if (offset < 0 || count < 0 || offset > chars.length - count)
+			throw new IndexOutOfBoundsException();
+		this.root = Node.build(chars, offset, offset + count);
+		this.rotationCount = 0;
+		this.size = count;
+	}
+	
+	/**
+	 * Returns an EditTree holding the count characters of s starting at
+	 * offset, built in O(count) time without copying the slice first.
+	 * 
+	 * @param s
+	 * @param offset
+	 *            index of the first character to use
+	 * @param count
+	 *            number of characters to use
+	 * @return the new tree
+	 * @throws IndexOutOfBoundsException
+	 *             if the slice is not within s
+	 */
+	public static EditTree valueOf(CharSequence s, int offset, int count) throws IndexOutOfBoundsException {
+		if (offset < 0 || count < 0 || offset > s.length() - count)
+			throw new IndexOutOfBoundsException();
+		EditTree tree = new EditTree();
+		tree.root = Node.build(s, offset, offset + count);
+		tree.size = count;
+		return tree;
+	}
+	
+	/**
+	 * Same as new EditTree(s), but for very large inputs the two halves of
+	 * every range are built in parallel on the common fork-join pool. The
+	 * tree has exactly the same shape, ranks and balance codes.
+	 * 
+	 * @param s
+	 * @return the new tree
+	 */
+	public static EditTree parallelValueOf(CharSequence s) {
+		return parallelValueOf(s, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Same as new EditTree(s), built in parallel on the given pool, so the
+	 * number of threads used can be chosen by the caller.
+	 * 
+	 * @param s
+	 * @param pool
+	 *            the pool to build the tree on
+	 * @return the new tree
+	 */
+	public static EditTree parallelValueOf(CharSequence s, ForkJoinPool pool) {
+		EditTree tree = new EditTree();
+		if (s.length() <= PARALLEL_BUILD_CUTOFF)
+			tree.root = Node.build(s, 0, s.length());
+		else
+			tree.root = pool.invoke(new Node.BuildTask(s, 0, s.length(), PARALLEL_BUILD_CUTOFF));
+		tree.size = s.length();
+		return tree;
 	}
 	
 	/**
@@ -107,8 +240,64 @@ public class EditTree {
 	 */
 	@Override
 	public String toString() {
-		return this.root.toString(); // replace by a real calculation.
+		// one array of exactly the right size, filled by a single walk
+		char[] chars = new char[this.size];
+		new InorderWalk(this.root).next(chars, 0, this.size);
+		return new String(chars);
+	}
 
+	/**
+	 * Writes the string this tree represents to out without ever building
+	 * the whole string, handing it over a chunk at a time.
+	 * 
+	 * @param out
+	 *            where to write the characters
+	 * @throws IOException
+	 *             if out throws one
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		char[] chunk = new char[Math.min(this.size, WRITE_CHUNK_SIZE)];
+		CharBuffer chunkView = CharBuffer.wrap(chunk);
+		InorderWalk walk = new InorderWalk(this.root);
+		int count;
+		while ((count = walk.next(chunk, 0, chunk.length)) > 0) {
+			out.append(chunkView, 0, count);
+		}
+	}
+	
+	/*
+	 * An in-order walk that keeps its own stack instead of recursing, so it
+	 * can stop when a buffer is full and carry on from the same place on the
+	 * next call. The stack never needs more than height + 1 entries.
+	 */
+	private static class InorderWalk {
+		
+		private Node[] stack;
+		private int top;
+		private Node current;
+		
+		InorderWalk(Node root) {
+			this.stack = new Node[root.height + 1];
+			this.top = 0;
+			this.current = root;
+		}
+		
+		// fills dst from offset with up to length characters, returns how many
+		int next(char[] dst, int offset, int length) {
+			int count = 0;
+			while (count < length && (this.current != Node.NULL_NODE || this.top > 0)) {
+				if (this.current != Node.NULL_NODE) {
+					this.stack[this.top++] = this.current;
+					this.current = this.current.left;
+				} else {
+					Node node = this.stack[--this.top];
+					dst[offset + count++] = node.element;
+					this.current = node.right;
+				}
+			}
+			return count;
+		}
+		
 	}
 
 	/**
@@ -154,57 +343,70 @@ public class EditTree {
 		// you!
 		// 2. Unit tests are cumulative, and many things are based on add(), so
 		// make sure that you get this one correct.
-		if (this.root == Node.NULL_NODE) 
-			this.root = new Node(ch);
+		if (!this.spineValid)
+			findSpine();
+		Node node = newNode(ch);
+		if (this.spineLength == 0)
+			this.root = node;
 		else
-			addHelper(this.root, ch);
-	}
-	
-	public boolean addHelper(Node node, char c){ //boolean to check when balance codes are updated
-		if (node == Node.NULL_NODE)
-			return false;
-		boolean balanced = false;
-		//before recursive call, check if we're at the place we want to add stuff
-		if (node.right == Node.NULL_NODE) { //we have found the end and will add
-			node.right = new Node(c);
-			switch (node.balance) {
-			case LEFT :
-				node.balance = Node.Code.SAME;
-				return true;
-			case RIGHT :
-				//should never happen
-				break;
-			case SAME :
-				node.balance = Node.Code.RIGHT;
-				break;
-			default:
-				break;
-			}
-			return false;
-		} 
-		//recursive call
-		balanced = addHelper(node.right, c);
-		//after recursive call update balance codes
-		if(!balanced) {
-			switch (node.balance) {
-			case LEFT :
-				node.balance = Node.Code.SAME;
-				return true;
-			case RIGHT :
-				//rotate
+			this.spine[this.spineLength - 1].right = node;
+		pushSpine(node);
+		this.size++;
+		this.fingerLength = 0;
+		// Walk back up the spine only while the right side keeps growing.
+		// Appending never changes a rank on the spine, and one rotation is
+		// always enough to bring the height back, so both stop early.
+		for (int i = this.spineLength - 2; i >= 0; i--) {
+			Node parent = this.spine[i];
+			if (parent.right.height - parent.left.height > 1) {
 				this.rotationCount++;
-				node.srl();
-				return true;
-			case SAME :
-				node.balance = Node.Code.RIGHT;
-				return false;
-			default:
-				return false;
+				Node newRoot = parent.srl();
+				if (i == 0)
+					this.root = newRoot;
+				else
+					this.spine[i - 1].right = newRoot;
+				// parent moved off the spine and became newRoot's left child
+				System.arraycopy(this.spine, i + 1, this.spine, i, this.spineLength - i - 1);
+				this.spineLength--;
+				return;
 			}
+			int oldHeight = parent.height;
+			parent.updateHeight();
+			parent.updateBalance();
+			if (parent.height == oldHeight)
+				return;
+		}
+	}
+	
+	// Records the path down the right spine, the only O(log N) part of add(char),
+	// copying any node on it that is shared with a copy of this tree.
+	private void findSpine() {
+		this.spineLength = 0;
+		if (this.sharesNodes) {
+			this.root = this.root.unshared();
+			for (Node node = this.root; node != Node.NULL_NODE; node = node.unsharedRight())
+				pushSpine(node);
+		} else {
+			for (Node node = this.root; node != Node.NULL_NODE; node = node.right)
+				pushSpine(node);
 		}
-		return true;
+		this.spineValid = true;
+	}
+	
+	private void pushSpine(Node node) {
+		if (this.spine == null)
+			this.spine = new Node[32];
+		else if (this.spineLength == this.spine.length)
+			this.spine = Arrays.copyOf(this.spine, 2 * this.spine.length);
+		this.spine[this.spineLength++] = node;
 	}
 	
+	// Called by everything that changes the tree except add(char), which
+	// keeps the spine up to date itself.
+	private void forgetPaths() {
+		this.spineValid = false;
+		this.fingerLength = 0;
+	}
 
 	/**
 	 * MILESTONE 1
@@ -216,106 +418,218 @@ public class EditTree {
 	 *             id pos is negative or too large for this tree
 	 */
 	public void add(char ch, int pos) throws IndexOutOfBoundsException {
-		if (pos < 0 || pos > this.root.size())
+		if (pos < 0 || pos > this.size)
 			throw new IndexOutOfBoundsException();
-		if (this.root == Node.NULL_NODE)
-			this.root = new Node(ch);
-		else
-			addIndexHelper (ch, pos, this.root);
-	}
-	
-	public boolean addIndexHelper(char c, int pos, Node node) {
-		if (node == Node.NULL_NODE)
-			return false;
-		boolean balanced = false;
-		//before recursive call, check if we're at the place we want to add stuff
-		if (pos <= node.rank) {
-			node.rank++;//going left, so rank will increase.
-			if (node.left == Node.NULL_NODE) {
-				node.left = new Node(c);
-				switch (node.balance) {
-				case LEFT :
-					//should never happen
-					break;
-				case RIGHT :
-					node.balance = Node.Code.SAME;
-					return true;
-				case SAME :
-					node.balance = Node.Code.LEFT;
-					break;
-				default:
-					break;
+		this.spineValid = false;
+		Node node = newNode(ch);
+		if (this.size == 0) {
+			this.root = node;
+			this.size = 1;
+			this.fingerLength = 0;
+			return;
+		}
+		// The new node goes just before the node now at pos: as its left child
+		// if it has none, otherwise as the right child of its predecessor. Past
+		// the end it goes right of the last node. Either way the finger ends up
+		// holding the whole path down to the new node's parent.
+		Node parent;
+		boolean asLeft = false;
+		if (pos == this.size) {
+			parent = moveFinger(pos - 1);
+		} else {
+			parent = moveFinger(pos);
+			if (parent.left == Node.NULL_NODE) {
+				asLeft = true;
+			} else {
+				int start = this.fingerStart[this.fingerLength - 1];
+				parent = parent.left;
+				pushFinger(parent, start, pos);
+				while (parent.right != Node.NULL_NODE) {
+					start += parent.rank + 1;
+					parent = parent.right;
+					pushFinger(parent, start, pos);
 				}
-				return false;
 			}
-			balanced = addIndexHelper(c, pos, node.left);
-			
-			//after recursive call update balance codes
-			if(!balanced) {
-				switch (node.balance) {
-				case LEFT :
-					//rotate
-					if (node.left.balance == Node.Code.RIGHT) {
-						this.rotationCount++;
-						node.left.srl();
-					}
-					this.rotationCount++;
-					node.srr();
-					return true;
-				case RIGHT :
-					node.balance = Node.Code.SAME;
-					return true;
-				case SAME :
-					node.balance = Node.Code.LEFT;
-					return false;
-				default:
-					return false;
-				}
+		}
+		parent = unshareFinger();
+		if (asLeft)
+			parent.left = node;
+		else
+			parent.right = node;
+		pushFinger(node, pos, pos + 1);
+		this.size++;
+		// every node on the path now covers one more position, and the ones
+		// the path leaves to the left have one more node before them
+		int last = this.fingerLength - 1;
+		for (int j = 0; j < last; j++) {
+			if (this.finger[j].left == this.finger[j + 1])
+				this.finger[j].rank++;
+			this.fingerEnd[j]++;
+		}
+		// Back up the path until a subtree's height stops changing. After an
+		// insert one rotation always brings the height back, so stop there too.
+		for (int j = last - 1; j >= 0; j--) {
+			Node current = this.finger[j];
+			int oldHeight = current.height;
+			if (rebalanceFinger(j) != current) {
+				this.fingerLength = j + 1;
+				return;
 			}
-		} else {
-			if (node.right == Node.NULL_NODE) {
-				node.right = new Node(c);
-				switch (node.balance) {
-				case LEFT :
-					node.balance = Node.Code.SAME;
-					return true;
-				case RIGHT :
-					//should never happen
-					break;
-				case SAME :
-					node.balance = Node.Code.RIGHT;
-					break;
-				default:
-					break;
-				}
-				return false;
+			if (current.height == oldHeight)
+				return;
+		}
+	}
+	
+	/*
+	 * Rotates finger[j] if one of its sides has become two taller than the
+	 * other, using a double rotation when the taller grandchild is on the
+	 * inside, the same rule for inserts and deletes. The new subtree root is
+	 * linked into finger[j - 1] (or becomes the root), takes finger[j]'s place
+	 * on the finger and is returned. Without a rotation only the height and
+	 * balance code are refreshed.
+	 */
+	private Node rebalanceFinger(int j) {
+		Node node = this.finger[j];
+		Node newRoot;
+		int difference = node.left.height - node.right.height;
+		if (difference > 1) {
+			if (node.left.balance == Node.Code.RIGHT) {
+				this.rotationCount++;
+				node.left = node.unsharedLeft().srl();
 			}
-			balanced = addIndexHelper(c, pos - (node.rank + 1), node.right);
-			
-			//after recursive call update balance codes
-			if(!balanced) {
-				switch (node.balance) {
-				case LEFT :
-					node.balance = Node.Code.SAME;
-					return true;
-				case RIGHT :
-					//rotate
-					if (node.right.balance == Node.Code.LEFT) {
-						this.rotationCount++;
-						node.right.srr();
-					}
-					this.rotationCount++;
-					node.srl();
-					return true;
-				case SAME :
-					node.balance = Node.Code.RIGHT;
-					return false;
-				default:
-					return false;
-				}
+			this.rotationCount++;
+			newRoot = node.srr();
+		} else if (difference < -1) {
+			if (node.right.balance == Node.Code.LEFT) {
+				this.rotationCount++;
+				node.right = node.unsharedRight().srr();
 			}
+			this.rotationCount++;
+			newRoot = node.srl();
+		} else {
+			node.updateHeight();
+			node.updateBalance();
+			return node;
 		}
-		return true;
+		if (j == 0)
+			this.root = newRoot;
+		else if (this.finger[j - 1].left == node)
+			this.finger[j - 1].left = newRoot;
+		else
+			this.finger[j - 1].right = newRoot;
+		this.finger[j] = newRoot;
+		return newRoot;
+	}
+
+	/**
+	 * Inserts all of s so that its first character ends up at position pos.
+	 * The text is built into its own balanced tree in O(k) and then joined
+	 * in with split and concatenate, so this is O(k + log N) instead of k
+	 * separate adds.
+	 * 
+	 * @param s
+	 *            the characters to add
+	 * @param pos
+	 *            inorder position of the first added character
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 */
+	public void add(CharSequence s, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		if (s.length() == 0)
+			return;
+		EditTree inserted = new EditTree();
+		inserted.root = Node.build(s, 0, s.length(), this.pool);
+		inserted.size = s.length();
+		this.insert(inserted, pos);
+	}
+	
+	// a node holding ch, taken from the pool if there is one
+	private Node newNode(char ch) {
+		return (this.pool == null) ? new Node(ch) : this.pool.take(ch);
+	}
+	
+	/**
+	 * Turns on a pool of up to capacity nodes for this tree: nodes it
+	 * deletes go in the pool, and nodes it adds come out of it, so a tree
+	 * that keeps deleting and adding characters stops allocating once the
+	 * pool has filled up. A capacity of 0, the default, turns the pool off.
+	 * Lowering the capacity drops the nodes that no longer fit.
+	 * 
+	 * @param capacity
+	 *            most nodes the pool may hold
+	 * @throws IllegalArgumentException
+	 *             if capacity is negative
+	 */
+	public void setNodePoolCapacity(int capacity) throws IllegalArgumentException {
+		if (capacity < 0)
+			throw new IllegalArgumentException();
+		if (capacity == 0)
+			this.pool = null;
+		else if (this.pool == null)
+			this.pool = new Node.Pool(capacity);
+		else
+			this.pool.setCapacity(capacity);
+	}
+	
+	/**
+	 * Drops every node in this tree's node pool, leaving the pool on but
+	 * empty, so the memory it held can be collected.
+	 */
+	public void trimNodePool() {
+		if (this.pool != null)
+			this.pool = new Node.Pool(this.pool.capacity());
+	}
+	
+	// number of nodes in the pool, for tests
+	int nodePoolSize() {
+		return (this.pool == null) ? 0 : this.pool.size();
+	}
+	
+	/**
+	 * Makes other empty, putting its nodes into this tree's node pool as far
+	 * as there is room. Meant for the trees that split and delete(start,
+	 * length) return once the caller is done with them. Nodes that other
+	 * shares with a copy made by copy() are left alone.
+	 * 
+	 * @param other
+	 *            the tree whose nodes to take
+	 * @throws IllegalArgumentException
+	 *             if this == other
+	 */
+	public void recycle(EditTree other) throws IllegalArgumentException {
+		if (this == other)
+			throw new IllegalArgumentException();
+		if (this.pool != null)
+			this.pool.giveAll(other.root);
+		other.root = Node.NULL_NODE;
+		other.size = 0;
+		other.forgetPaths();
+	}
+	
+	/**
+	 * Moves the contents of other into this tree so that its first character
+	 * ends up at position pos. Like concatenate, other is made empty. This is
+	 * one split and two concatenates, so it runs in O(log N).
+	 * 
+	 * @param other
+	 *            the tree to insert
+	 * @param pos
+	 *            inorder position of other's first character
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 * @throws IllegalArgumentException
+	 *             if this == other
+	 */
+	public void insert(EditTree other, int pos) throws IndexOutOfBoundsException, IllegalArgumentException {
+		if (this == other)
+			throw new IllegalArgumentException();
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		EditTree rest = this.split(pos);
+		this.concatenate(other);
+		this.concatenate(rest);
 	}
 
 	/**
@@ -326,24 +640,80 @@ public class EditTree {
 	 * @throws IndexOutOfBoundsException
 	 */
 	public char get(int pos) throws IndexOutOfBoundsException {
-		if (pos < 0 || pos >= this.root.size())
-			throw new IndexOutOfBoundsException();
-		if (this.root == Node.NULL_NODE)
+		if (pos < 0 || pos >= this.size)
 			throw new IndexOutOfBoundsException();
-		return getHelper(pos, this.root);
+		return moveFinger(pos).element;
 	}
 	
-	public char getHelper(int pos, Node node) {
-		if (pos == node.rank) {
-			return node.element;
+	/*
+	 * Moves the finger to the node at pos and returns that node. It first
+	 * climbs the current finger until it reaches a subtree that holds pos,
+	 * then walks down from there, so a position d away from the last one
+	 * usually costs O(log d) instead of a walk from the root. Since the
+	 * finger is updated, even reading changes this tree's internal state.
+	 */
+	private Node moveFinger(int pos) {
+		if (this.fingerLength == 0)
+			pushFinger(this.root, 0, this.size);
+		int last = this.fingerLength - 1;
+		while (last > 0 && (pos < this.fingerStart[last] || pos >= this.fingerEnd[last]))
+			last--;
+		this.fingerLength = last + 1;
+		Node node = this.finger[last];
+		int start = this.fingerStart[last];
+		int end = this.fingerEnd[last];
+		while (pos != start + node.rank) {
+			if (pos < start + node.rank) {
+				end = start + node.rank;
+				node = node.left;
+			} else {
+				start += node.rank + 1;
+				node = node.right;
+			}
+			pushFinger(node, start, end);
 		}
-		if (pos < node.rank) {
-			return getHelper(pos, node.left);
+		return node;
+	}
+	
+	/*
+	 * Copies, from the top down, every node on the finger that is shared
+	 * with a copy of this tree, so the path can be changed in place, and
+	 * returns the last node on it.
+	 */
+	private Node unshareFinger() {
+		if (!this.sharesNodes)
+			return this.finger[this.fingerLength - 1];
+		this.root = this.root.unshared();
+		this.finger[0] = this.root;
+		for (int j = 1; j < this.fingerLength; j++) {
+			Node parent = this.finger[j - 1];
+			if (parent.left == this.finger[j])
+				this.finger[j] = parent.unsharedLeft();
+			else
+				this.finger[j] = parent.unsharedRight();
 		}
-		if (pos > node.rank) {
-			return getHelper(pos - (node.rank + 1), node.right);
+		return this.finger[this.fingerLength - 1];
+	}
+	
+	// Adds one level to the finger. The arrays are kept for the life of the
+	// tree and only grow if it gets taller than they are long. They start out
+	// just long enough for the tree as it is, since the small trees split and
+	// add(CharSequence, int) make often only use the finger once.
+	private void pushFinger(Node node, int start, int end) {
+		if (this.finger == null) {
+			int length = Math.max(8, this.root.height + 2);
+			this.finger = new Node[length];
+			this.fingerStart = new int[length];
+			this.fingerEnd = new int[length];
+		} else if (this.fingerLength == this.finger.length) {
+			this.finger = Arrays.copyOf(this.finger, 2 * this.fingerLength);
+			this.fingerStart = Arrays.copyOf(this.fingerStart, 2 * this.fingerLength);
+			this.fingerEnd = Arrays.copyOf(this.fingerEnd, 2 * this.fingerLength);
 		}
-		return '%';//should never reach this line
+		this.finger[this.fingerLength] = node;
+		this.fingerStart[this.fingerLength] = start;
+		this.fingerEnd[this.fingerLength] = end;
+		this.fingerLength++;
 	}
 
 	/**
@@ -351,10 +721,7 @@ public class EditTree {
 	 * @return the height of this tree CHANGEME
 	 */
 	public int height() {
-		if (this.root == Node.NULL_NODE) {
-			return -1;
-		}
-		return this.root.height(); // replace by a real calculation.
+		return this.root.height(); // cached in the root, so O(1)
 	}
 
 	/**
@@ -362,7 +729,7 @@ public class EditTree {
 	 * @return the number of nodes in this tree 
 	 */
 	public int size() {
-		return this.root.size(); // replace by a real calculation.
+		return this.size;
 	}
 	
 	
@@ -381,34 +748,85 @@ public class EditTree {
 		// The tests assume assume that you will replace it with the
 		// *successor*.
 		
-		if (pos < 0 || pos >= this.root.size()) // makes sure pos parameter is valid
+		if (pos < 0 || pos >= this.size) // makes sure pos parameter is valid
 			throw new IndexOutOfBoundsException();
-		
-		if (this.root.right == Node.NULL_NODE && this.root.left != Node.NULL_NODE) {
-			if (pos == 0) {
-				char deleted = this.root.left.element;
-				this.root.left = Node.NULL_NODE;
-				return deleted;
-			} 
-			char deleted = this.root.element;
-			this.root = this.root.left;
-			return deleted;
-		} else if (this.root.isLeaf()) {
-			char deleted = this.root.element;
-			this.root = Node.NULL_NODE;
-			return deleted;
+		Node unlinked = removeNode(pos);
+		char deleted = unlinked.element;
+		// removeNode copied the node first if it was shared, so no one else has it
+		if (this.pool != null)
+			this.pool.give(unlinked);
+		return deleted;
+	}
+	
+	/*
+	 * Does the work of delete(pos) and returns the node that was unlinked,
+	 * holding the deleted character, so nothing needs to be allocated to
+	 * report it. concatenate reuses that node as its pivot.
+	 */
+	private Node removeNode(int pos) {
+		this.spineValid = false;
+		Node node = moveFinger(pos);
+		int nodeIndex = this.fingerLength - 1;
+		// A node with two children takes over its successor's element, and the
+		// successor, which never has a left child, is unlinked instead.
+		if (node.left != Node.NULL_NODE && node.right != Node.NULL_NODE) {
+			int start = pos + 1;
+			int end = this.fingerEnd[nodeIndex];
+			Node successor = node.right;
+			pushFinger(successor, start, end);
+			while (successor.left != Node.NULL_NODE) {
+				end = start + successor.rank;
+				successor = successor.left;
+				pushFinger(successor, start, end);
+			}
 		}
-		
-		Node.DeletionWrapper wrapper = root.deleteNode(pos);
-		this.rotationCount += wrapper.rotCount;
-		return wrapper.deleted;
+		int unlinkedIndex = this.fingerLength - 1;
+		Node unlinked = unshareFinger();
+		if (unlinkedIndex != nodeIndex) {
+			node = this.finger[nodeIndex];
+			char deleted = node.element;
+			node.element = unlinked.element;
+			unlinked.element = deleted;
+		}
+		Node child = (unlinked.left != Node.NULL_NODE) ? unlinked.left : unlinked.right;
+		for (int j = 0; j < unlinkedIndex; j++) {
+			if (this.finger[j].left == this.finger[j + 1])
+				this.finger[j].rank--;
+			this.fingerEnd[j]--;
+		}
+		if (unlinkedIndex == 0)
+			this.root = child;
+		else if (this.finger[unlinkedIndex - 1].left == unlinked)
+			this.finger[unlinkedIndex - 1].left = child;
+		else
+			this.finger[unlinkedIndex - 1].right = child;
+		this.fingerLength = unlinkedIndex;
+		this.size--;
+		// Unlike an insert, a rotation after a delete can leave the subtree
+		// shorter, so keep going until some height stays the same.
+		for (int j = unlinkedIndex - 1; j >= 0; j--) {
+			Node current = this.finger[j];
+			int oldHeight = current.height;
+			Node newRoot = rebalanceFinger(j);
+			if (newRoot != current)
+				this.fingerLength = j + 1;
+			if (newRoot.height == oldHeight)
+				break;
+		}
+		unlinked.left = Node.NULL_NODE;
+		unlinked.right = Node.NULL_NODE;
+		unlinked.rank = 0;
+		unlinked.height = 0;
+		unlinked.balance = Node.Code.SAME;
+		return unlinked;
 	}
 	
 
 	/**
 	 * MILESTONE 3, EASY
-	 * This method operates in O(length*log N), where N is the size of this
-	 * tree.
+	 * This method operates in O(length + log N), where N is the size of this
+	 * tree, since it walks the range in order instead of looking up each
+	 * position from the root.
 	 * 
 	 * @param pos
 	 *            location of the beginning of the string to retrieve
@@ -420,14 +838,38 @@ public class EditTree {
 	 *             within this tree.
 	 */
 	public String get(int pos, int length) throws IndexOutOfBoundsException {
-		if (pos > this.size() - 1 || pos < 0 || pos + length > this.size()) {
+		if (pos > this.size - 1 || pos < 0 || length < 0 || pos + length > this.size) {
 			throw new IndexOutOfBoundsException();
 		}
-		StringBuilder sb = new StringBuilder();
-		for(int i = pos; i < pos + length; i++) {
-			sb.append(this.root.getNode(i).element);
+		char[] chars = new char[length];
+		this.root.getChars(0, pos, pos + length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Copies the characters at positions srcBegin to srcEnd - 1 into dst,
+	 * starting at dstBegin, the same way String.getChars does. Nothing is
+	 * allocated, so a caller can reuse one buffer for every read. Runs in
+	 * O((srcEnd - srcBegin) + log N).
+	 * 
+	 * @param srcBegin
+	 *            position of the first character to copy
+	 * @param srcEnd
+	 *            position after the last character to copy
+	 * @param dst
+	 *            the destination array
+	 * @param dstBegin
+	 *            the start offset in dst
+	 * @throws IndexOutOfBoundsException
+	 *             if the range is not within this tree or does not fit in dst
+	 */
+	public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin)
+			throws IndexOutOfBoundsException {
+		if (srcBegin < 0 || srcBegin > srcEnd || srcEnd > this.size
+				|| dstBegin < 0 || dstBegin + (srcEnd - srcBegin) > dst.length) {
+			throw new IndexOutOfBoundsException();
 		}
-		return sb.toString();
+		this.root.getChars(0, srcBegin, srcEnd, dst, dstBegin);
 	}
 
 	/**
@@ -441,95 +883,144 @@ public class EditTree {
 	 *             if this == other
 	 */
 	public void concatenate(EditTree other) throws IllegalArgumentException {
-		char toReplace = '\0';
+		Node pivot;
 		if(this == other){
 			throw new IllegalArgumentException();
 		}
+		this.forgetPaths();
+		other.forgetPaths();
 		if (other.root == Node.NULL_NODE) {
 			return;
 		}
+		this.sharesNodes |= other.sharesNodes;
 		if (this.root == Node.NULL_NODE) {
 			this.root = other.root;
+			this.size = other.size;
 			other.root = Node.NULL_NODE;
+			other.size = 0;
 			return;
 		}
-		if (other.root.isLeaf()) {
-			this.add(other.root.element);
-			other.root = Node.NULL_NODE;
-			return;
-		}
+		// the node taken off the end of one tree is reused to join the two
 		if (this.height() >= other.height()) {
-			toReplace = other.delete(0);
+			pivot = other.removeNode(0);
 		} else {
-			toReplace = this.delete(this.size() - 1);
+			pivot = this.removeNode(this.size - 1);
 		}
-		paste(this, new Node(toReplace), other);
+		this.root = Node.join(this.root, this.size, pivot, other.root);
+		this.size += 1 + other.size;
+		this.forgetPaths();
 		other.root = Node.NULL_NODE;
+		other.size = 0;
+		other.forgetPaths();
+	}
+	
+	/**
+	 * Concatenates all of the given trees, in order, into a new tree. They
+	 * are joined pairwise as a balanced tree of joins, so each tree takes
+	 * part in only O(log k) joins and the whole thing is O(k log N), where
+	 * one concatenate after another would keep walking down an ever taller
+	 * tree. Like concatenate, this empties every one of the given trees.
+	 * 
+	 * @param trees
+	 * @return a tree holding the elements of all of the trees
+	 * @throws IllegalArgumentException
+	 *             if a tree is in the list more than once
+	 */
+	public static EditTree concatenateAll(List<EditTree> trees) throws IllegalArgumentException {
+		EditTree[] array = distinctTrees(trees);
+		EditTree result = new EditTree();
+		if (array.length > 0)
+			result.concatenate(concatenateRange(array, 0, array.length));
+		return result;
 	}
 	
-	public void paste(EditTree t, Node q, EditTree v){
-		Node p = t.root;
-		int tHeight = t.height();
-		int vHeight = v.height();
-		int pHeight;
-		Node parent = Node.NULL_NODE;
+	/**
+	 * Same as concatenateAll(trees), with independent joins run in parallel
+	 * on the common ForkJoinPool.
+	 * 
+	 * @param trees
+	 * @return a tree holding the elements of all of the trees
+	 * @throws IllegalArgumentException
+	 *             if a tree is in the list more than once
+	 */
+	public static EditTree parallelConcatenateAll(List<EditTree> trees) throws IllegalArgumentException {
+		return parallelConcatenateAll(trees, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Same as concatenateAll(trees), with independent joins run in parallel
+	 * on the given pool.
+	 * 
+	 * @param trees
+	 * @param pool
+	 *            the pool to join the trees on
+	 * @return a tree holding the elements of all of the trees
+	 * @throws IllegalArgumentException
+	 *             if a tree is in the list more than once
+	 */
+	public static EditTree parallelConcatenateAll(List<EditTree> trees, ForkJoinPool pool)
+			throws IllegalArgumentException {
+		EditTree[] array = distinctTrees(trees);
+		EditTree result = new EditTree();
+		if (array.length > PARALLEL_CONCATENATE_CUTOFF)
+			result.concatenate(pool.invoke(new ConcatenateTask(array, 0, array.length)));
+		else if (array.length > 0)
+			result.concatenate(concatenateRange(array, 0, array.length));
+		return result;
+	}
+	
+	// a tree listed twice would already be emptied into another by the time
+	// its second turn came, so it is rejected up front like this.concatenate(this)
+	private static EditTree[] distinctTrees(List<EditTree> trees) {
+		EditTree[] array = trees.toArray(new EditTree[trees.size()]);
+		IdentityHashMap<EditTree, Boolean> seen = new IdentityHashMap<EditTree, Boolean>();
+		for (EditTree tree : array) {
+			if (seen.put(tree, Boolean.TRUE) != null)
+				throw new IllegalArgumentException();
+		}
+		return array;
+	}
+	
+	// joins trees[begin..end) into trees[begin] and returns it
+	private static EditTree concatenateRange(EditTree[] trees, int begin, int end) {
+		if (end - begin == 1)
+			return trees[begin];
+		int middle = (begin + end) >>> 1;
+		EditTree left = concatenateRange(trees, begin, middle);
+		left.concatenate(concatenateRange(trees, middle, end));
+		return left;
+	}
+	
+	/*
+	 * Joins the two halves of a range of trees at the same time once there
+	 * are enough of them to be worth a task each.
+	 */
+	private static class ConcatenateTask extends RecursiveTask<EditTree> {
 		
-		if(tHeight >= vHeight){
-			p = t.root;
-			pHeight = tHeight;
-			while(pHeight - vHeight >= 1){
-				if(p.balance == Node.Code.LEFT){
-					pHeight =- 2;
-				}
-				else{
-					pHeight =- 1;
-				}
-				parent = p;
-				p = p.right;
-			}
-			q.left = p;
-			q.right = v.root;
-			if(pHeight == vHeight){
-				q.balance = Node.Code.SAME;
-			}
-			else{
-				q.balance = Node.Code.LEFT;
-			}
-			if(parent != Node.NULL_NODE){
-				parent.right = q;
-			} else {
-				t.root = q;
-			}
-			q.rank = p.size();
-			t.root.rebalanceAfterConcatenation(false, q, v.size());
-		}
-		else{
-			p = v.root;
-			pHeight = vHeight;
-			while(pHeight - tHeight >= 1){
-				if(p.balance == Node.Code.RIGHT){
-					pHeight =- 2;
-				}
-				else{
-					pHeight =- 1;
-				}
-				parent = p;
-				p = p.left;
-			}
-			q.right = p;
-			q.left = t.root;
-			if(pHeight == vHeight){
-				q.balance = Node.Code.SAME;
-			}
-			else{
-				q.balance = Node.Code.RIGHT;
-			}
-			if(parent != Node.NULL_NODE){
-				parent.left = q;
-			}
-			t.root = v.root;
-			t.root.rebalanceAfterConcatenation(true, q, v.size());
+		private static final long serialVersionUID = 1L;
+		
+		private final EditTree[] trees;
+		private final int begin;
+		private final int end;
+		
+		ConcatenateTask(EditTree[] trees, int begin, int end) {
+			this.trees = trees;
+			this.begin = begin;
+			this.end = end;
+		}
+		
+		@Override
+		protected EditTree compute() {
+			if (this.end - this.begin <= PARALLEL_CONCATENATE_CUTOFF)
+				return concatenateRange(this.trees, this.begin, this.end);
+			int middle = (this.begin + this.end) >>> 1;
+			ConcatenateTask right = new ConcatenateTask(this.trees, middle, this.end);
+			right.fork();
+			EditTree left = new ConcatenateTask(this.trees, this.begin, middle).compute();
+			left.concatenate(right.join());
+			return left;
 		}
+		
 	}
 	
 	/**
@@ -545,67 +1036,136 @@ public class EditTree {
 	 * @throws IndexOutOfBoundsException
 	 */
 	public EditTree split(int pos) throws IndexOutOfBoundsException {
-		if (pos == 0) {
-			EditTree toReturn = new EditTree();
-			toReturn.root = this.root;
-			this.root = Node.NULL_NODE;
-			return toReturn;
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		this.forgetPaths();
+		
+		// Record the path down to the gap just before pos. Every node on it
+		// goes to one side together with its subtree on the far side of the
+		// path, which is what lets each level be joined back in one step.
+		// Shared nodes on it are copied, since they all get changed.
+		Node node = this.root.unshared();
+		int start = 0;
+		int end = this.size;
+		while (node != Node.NULL_NODE) {
+			pushFinger(node, start, end);
+			if (pos <= start + node.rank) {
+				end = start + node.rank;
+				node = node.unsharedLeft();
+			} else {
+				start += node.rank + 1;
+				node = node.unsharedRight();
+			}
 		}
 		
-		pos--;
+		// Join the pieces from the bottom up. The pieces get taller going up,
+		// so the joins' costs add up to O(log N) in total.
+		Node left = Node.NULL_NODE;
+		Node right = Node.NULL_NODE;
+		int leftSize = 0;
+		int rightSize = 0;
+		for (int j = this.fingerLength - 1; j >= 0; j--) {
+			node = this.finger[j];
+			int position = this.fingerStart[j] + node.rank;
+			if (pos <= position) {
+				int rightSubtreeSize = this.fingerEnd[j] - position - 1;
+				right = Node.join(right, rightSize, node, node.right);
+				rightSize += 1 + rightSubtreeSize;
+			} else {
+				int leftSubtreeSize = node.rank;
+				left = Node.join(node.left, leftSubtreeSize, node, left);
+				leftSize += 1 + leftSubtreeSize;
+			}
+		}
+		this.fingerLength = 0;
 		
-		Stack<Node> nodeStack = new Stack<Node>(); //path of nodes to node at pos
+		this.root = left;
+		this.size = leftSize;
 		EditTree returnTree = new EditTree();
-		
-		Node currentNode = this.root;
-		int currentPos = this.root.rank + 1;
-		while(true){
-			if(currentNode.rank < pos){
-				nodeStack.push(currentNode);
-				pos -= (currentNode.rank + 1);
-				currentNode = currentNode.right;
-			}
-			else if(currentNode.rank > pos){
-				nodeStack.push(currentNode);
-				currentNode = currentNode.left;
-			}
-			else{
-				nodeStack.push(currentNode);
-				break;
-			}
+		returnTree.root = right;
+		returnTree.size = rightSize;
+		returnTree.sharesNodes = this.sharesNodes;
+		return returnTree;
+	}
+
+	/**
+	 * Splits this tree at every one of the given positions in one pass, so
+	 * the descent from the root is shared instead of being repeated for
+	 * each cut. Takes O(k log(N/k)) time for k positions.
+	 * 
+	 * @param positions
+	 *            where to cut, in nondecreasing order, each from 0 to size()
+	 * @return k+1 trees whose concatenation is the original tree. The first
+	 *         one is this tree, which keeps the elements before positions[0].
+	 *         The nodes of the others are removed from this tree.
+	 * @throws IndexOutOfBoundsException
+	 *             if a position is out of range
+	 * @throws IllegalArgumentException
+	 *             if the positions are not in order
+	 */
+	public EditTree[] split(int... positions) {
+		for (int i = 0; i < positions.length; i++) {
+			if (positions[i] < 0 || positions[i] > this.size)
+				throw new IndexOutOfBoundsException();
+			if (i > 0 && positions[i] < positions[i - 1])
+				throw new IllegalArgumentException();
 		}
-		returnTree = splitTree(nodeStack);
+		this.forgetPaths();
 		
-		return returnTree; // replace by a real calculation.
-	}
-	
-	public EditTree splitTree(Stack<Node> nodeStack){
-		Node currentNode = nodeStack.pop();
-		Node s = currentNode.left;
-		Node t = currentNode.right;
-		Node child;
-		EditTree tTree = new EditTree();
-		EditTree sTree = new EditTree();
-		tTree.root = t;
-		sTree.root = s;
-		EditTree nullTree = new EditTree();
-		sTree.add(currentNode.element);
-		while(!nodeStack.isEmpty()){
-			child = currentNode;
-			currentNode = nodeStack.pop();
-			if (child == currentNode.right) {
-				EditTree left = new EditTree();
-				left.root = currentNode.left;
-				paste(left, currentNode, sTree);
-				sTree = left;
-			} else {
-				EditTree right = new EditTree();
-				right.root = currentNode.right;
-				paste(tTree, currentNode, right);
+		Node[] roots = new Node[positions.length + 1];
+		int[] sizes = new int[positions.length + 1];
+		splitAll(this.root, 0, this.size, positions, 0, positions.length, roots, sizes);
+		
+		EditTree[] pieces = new EditTree[positions.length + 1];
+		pieces[0] = this;
+		for (int i = 0; i < pieces.length; i++) {
+			if (i > 0)
+				pieces[i] = new EditTree();
+			pieces[i].root = roots[i];
+			pieces[i].size = sizes[i];
+			pieces[i].sharesNodes = this.sharesNodes;
+		}
+		return pieces;
+	}
+	
+	/*
+	 * Cuts the subtree at node, which holds positions start to end, at
+	 * positions[lo..hi) and puts pieces lo to hi in roots and sizes. The cuts
+	 * at or before node go to its left subtree and the rest to its right;
+	 * the piece that straddles node is the left's last piece and the right's
+	 * first piece joined back together through node.
+	 */
+	private static void splitAll(Node node, int start, int end, int[] positions,
+			int lo, int hi, Node[] roots, int[] sizes) {
+		if (lo == hi || node == Node.NULL_NODE) {
+			for (int i = lo; i <= hi; i++) {
+				roots[i] = Node.NULL_NODE;
+				sizes[i] = 0;
 			}
+			roots[lo] = node;
+			sizes[lo] = end - start;
+			return;
 		}
-		this.root = sTree.root;
-		return tTree;
+		node = node.unshared();
+		int position = start + node.rank;
+		// first cut that falls after node
+		int mid = lo;
+		int high = hi;
+		while (mid < high) {
+			int m = (mid + high) >>> 1;
+			if (positions[m] <= position)
+				mid = m + 1;
+			else
+				high = m;
+		}
+		Node left = node.left;
+		Node right = node.right;
+		splitAll(left, start, position, positions, lo, mid, roots, sizes);
+		Node leftPiece = roots[mid];
+		int leftPieceSize = sizes[mid];
+		splitAll(right, position + 1, end, positions, mid, hi, roots, sizes);
+		roots[mid] = Node.join(leftPiece, leftPieceSize, node, roots[mid]);
+		sizes[mid] += leftPieceSize + 1;
 	}
 
 	/**
@@ -626,7 +1186,7 @@ public class EditTree {
 	 */
 	public EditTree delete(int start, int length)
 			throws IndexOutOfBoundsException {
-		if (start < 0 || start + length >= this.size())
+		if (start < 0 || start + length >= this.size)
 			throw new IndexOutOfBoundsException(
 					(start < 0) ? "negative first argument to delete"
 							: "delete range extends past end of string");
@@ -662,8 +1222,17 @@ public class EditTree {
 		if (s.equals("")) {
 			return 0;
 		}
-		String searchString = this.toString();
-		char[] charArray = searchString.toCharArray();
+		char[] charArray = new char[this.size];
+		new InorderWalk(this.root).next(charArray, 0, this.size);
+		return find(charArray, s, pos);
+	}
+	
+	// The search behind find(s, pos), over characters already copied out of
+	// a tree, so ConcurrentEditTree can search a copy it made optimistically.
+	static int find(char[] charArray, String s, int pos) {
+		if (s.equals("")) {
+			return 0;
+		}
 		int currIndex = 0;
 		for(int i = pos; i < charArray.length; i++) {
 			if (s.charAt(currIndex) == charArray[i]) {
@@ -0,0 +1,287 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests for the bulk operations on EditTree that read or write many
+ * characters at once.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+public class EditTreeBulkTest {
+
+	private static EditTree makeRandomTree(Random random, int size) {
+		EditTree t = new EditTree();
+		for (int i = 0; i < size; i++) {
+			t.add((char) ('a' + random.nextInt(26)), random.nextInt(i + 1));
+		}
+		return t;
+	}
+
+	@Test
+	public void testGetRangeMatchesToString() {
+		Random random = new Random(230);
+		EditTree t = makeRandomTree(random, 500);
+		String s = t.toString();
+		for (int i = 0; i < 200; i++) {
+			int pos = random.nextInt(s.length());
+			int length = random.nextInt(s.length() - pos + 1);
+			assertEquals(s.substring(pos, pos + length), t.get(pos, length));
+		}
+	}
+
+	@Test
+	public void testGetRangeOutOfBounds() {
+		EditTree t = new EditTree("abc");
+		int[][] bad = { { -1, 1 }, { 3, 0 }, { 1, 3 }, { 0, -1 }, { 2, -3 } };
+		for (int[] args : bad) {
+			try {
+				t.get(args[0], args[1]);
+				fail("Did not throw IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				// success
+			}
+		}
+		assertEquals("", t.get(1, 0));
+	}
+
+	@Test
+	public void testGetCharsIntoBuffer() {
+		Random random = new Random(2017);
+		EditTree t = makeRandomTree(random, 300);
+		String s = t.toString();
+		char[] buffer = new char[310];
+		for (int i = 0; i < 200; i++) {
+			int begin = random.nextInt(s.length() + 1);
+			int end = begin + random.nextInt(s.length() - begin + 1);
+			int dstBegin = random.nextInt(buffer.length - (end - begin) + 1);
+			t.getChars(begin, end, buffer, dstBegin);
+			assertEquals(s.substring(begin, end),
+					new String(buffer, dstBegin, end - begin));
+		}
+	}
+
+	@Test
+	public void testGetCharsOutOfBounds() {
+		EditTree t = new EditTree();
+		t.add('a');
+		t.add('b');
+		t.add('c');
+		char[] buffer = new char[2];
+		int[][] bad = { { -1, 1, 0 }, { 2, 1, 0 }, { 0, 4, 0 }, { 0, 3, 0 },
+				{ 0, 2, 1 }, { 0, 1, -1 } };
+		for (int[] args : bad) {
+			try {
+				t.getChars(args[0], args[1], buffer, args[2]);
+				fail("Did not throw IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				// success
+			}
+		}
+		t.getChars(3, 3, buffer, 2);
+	}
+
+	@Test
+	public void testToStringAndWriteTo() throws IOException {
+		Random random = new Random(19);
+		for (int size : new int[] { 0, 1, 2, 100, 20000 }) {
+			EditTree t = makeRandomTree(random, size);
+			StringBuilder expected = new StringBuilder();
+			for (int i = 0; i < size; i++) {
+				expected.append(t.get(i));
+			}
+			assertEquals(expected.toString(), t.toString());
+			StringBuilder written = new StringBuilder();
+			t.writeTo(written);
+			assertEquals(expected.toString(), written.toString());
+		}
+	}
+
+	@Test
+	public void testConstructFromCharsAndSequences() {
+		String s = "The quick brown fox jumps over the lazy dog";
+		for (int length = 0; length <= s.length(); length++) {
+			String expected = s.substring(0, length);
+			EditTree fromString = new EditTree(expected);
+			EditTree fromChars = new EditTree(expected.toCharArray());
+			EditTree fromBuilder = new EditTree(new StringBuilder(expected));
+			assertEquals(expected, fromString.toString());
+			assertEquals(expected, fromChars.toString());
+			assertEquals(expected, fromBuilder.toString());
+			assertEquals(length, fromChars.size());
+			assertEquals(fromString.toDebugString(), fromChars.toDebugString());
+			assertEquals(fromString.toDebugString(), fromBuilder.toDebugString());
+			assertEquals(0, fromChars.totalRotationCount());
+		}
+	}
+
+	@Test
+	public void testConstructFromSlices() {
+		String s = "abcdefghijklmnopqrstuvwxyz";
+		char[] chars = s.toCharArray();
+		for (int offset = 0; offset <= s.length(); offset++) {
+			for (int count = 0; offset + count <= s.length(); count++) {
+				String expected = s.substring(offset, offset + count);
+				assertEquals(expected, new EditTree(chars, offset, count).toString());
+				EditTree t = EditTree.valueOf(s, offset, count);
+				assertEquals(expected, t.toString());
+				// make sure ranks and balance codes let edits work afterwards
+				t.add('!', count / 2);
+				t.add('?');
+				assertEquals(expected.substring(0, count / 2) + "!"
+						+ expected.substring(count / 2) + "?", t.toString());
+			}
+		}
+		try {
+			EditTree.valueOf(s, 20, 7);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testParallelBuildMatchesSequentialBuild() {
+		Random random = new Random(42);
+		for (int size : new int[] { 0, 5, 70000, 300001 }) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < size; i++) {
+				sb.append((char) ('a' + random.nextInt(26)));
+			}
+			EditTree sequential = new EditTree(sb);
+			EditTree parallel = EditTree.parallelValueOf(sb);
+			assertEquals(sequential.toDebugString(), parallel.toDebugString());
+			assertEquals(sequential.height(), parallel.height());
+			assertEquals(size, parallel.size());
+		}
+	}
+
+	@Test
+	public void testAddSequenceAtEveryPosition() {
+		String s = "abcdefghijklmnopqrst";
+		for (int length : new int[] { 0, 1, 3, 50 }) {
+			StringBuilder pasted = new StringBuilder();
+			for (int i = 0; i < length; i++) {
+				pasted.append((char) ('A' + i % 26));
+			}
+			for (int pos = 0; pos <= s.length(); pos++) {
+				EditTree t = new EditTree(s);
+				t.add(pasted, pos);
+				String expected = s.substring(0, pos) + pasted + s.substring(pos);
+				assertEquals(expected, t.toString());
+				assertEquals(expected.length(), t.size());
+				// ranks and balance codes still have to be right afterwards
+				t.add('x', pos);
+				assertEquals(expected.substring(0, pos) + "x" + expected.substring(pos),
+						t.toString());
+			}
+		}
+	}
+
+	@Test
+	public void testInsertTreeEmptiesOther() {
+		EditTree t = new EditTree("hello world");
+		EditTree other = new EditTree(", big");
+		t.insert(other, 5);
+		assertEquals("hello, big world", t.toString());
+		assertEquals("", other.toString());
+		assertEquals(0, other.size());
+		try {
+			t.insert(t, 0);
+			fail("Did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			t.add("abc", t.size() + 1);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testSplitAtManyPositions() {
+		Random random = new Random(230);
+		for (int round = 0; round < 100; round++) {
+			EditTree t = makeRandomTree(random, random.nextInt(300));
+			String s = t.toString();
+			int[] positions = new int[random.nextInt(20)];
+			for (int i = 0; i < positions.length; i++) {
+				positions[i] = random.nextInt(s.length() + 1);
+			}
+			Arrays.sort(positions);
+			EditTree[] pieces = t.split(positions);
+			assertEquals(positions.length + 1, pieces.length);
+			assertTrue(pieces[0] == t);
+			for (int i = 0; i < pieces.length; i++) {
+				int from = i == 0 ? 0 : positions[i - 1];
+				int to = i == positions.length ? s.length() : positions[i];
+				String expected = s.substring(from, to);
+				assertEquals(expected, pieces[i].toString());
+				assertEquals(expected.length(), pieces[i].size());
+				for (int j = 0; j < expected.length(); j++) {
+					assertEquals(expected.charAt(j), pieces[i].get(j));
+				}
+				assertTrue(pieces[i].height() <= 1.44 * Math.log(expected.length() + 2) / Math.log(2));
+			}
+		}
+		EditTree t = new EditTree("abc");
+		try {
+			t.split(2, 1);
+			fail("Did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			t.split(0, 4);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testConcatenateAllMatchesSequentialConcatenate() {
+		Random random = new Random(230);
+		for (int count : new int[] { 0, 1, 2, 7, 1000 }) {
+			for (int parallel = 0; parallel < 2; parallel++) {
+				List<EditTree> trees = new ArrayList<EditTree>();
+				StringBuilder expected = new StringBuilder();
+				for (int i = 0; i < count; i++) {
+					EditTree t = makeRandomTree(random, random.nextInt(random.nextBoolean() ? 3 : 50));
+					expected.append(t.toString());
+					trees.add(t);
+				}
+				EditTree all = parallel == 0 ? EditTree.concatenateAll(trees)
+						: EditTree.parallelConcatenateAll(trees, new ForkJoinPool(4));
+				assertEquals(expected.toString(), all.toString());
+				assertEquals(expected.length(), all.size());
+				assertTrue(all.height() <= 1.44 * Math.log(expected.length() + 2) / Math.log(2));
+				for (EditTree t : trees) {
+					assertEquals(0, t.size());
+					assertEquals("", t.toString());
+				}
+			}
+		}
+		EditTree t = new EditTree("abc");
+		try {
+			EditTree.concatenateAll(Arrays.asList(t, new EditTree("d"), t));
+			fail("Did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+}
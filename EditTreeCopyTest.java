@@ -0,0 +1,102 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for copy(), which shares nodes between a tree and its copy until
+ * one of them is changed.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+public class EditTreeCopyTest {
+
+	@Test
+	public void testCopySharesNodes() {
+		EditTree t = new EditTree("abcdefg");
+		EditTree c = t.copy();
+		assertTrue(t.getRoot() == c.getRoot());
+		assertEquals("abcdefg", c.toString());
+		assertEquals(t.size(), c.size());
+		assertEquals(t.height(), c.height());
+		assertEquals(t.toDebugString(), c.toDebugString());
+	}
+
+	@Test
+	public void testEditsDoNotShowInCopy() {
+		EditTree t = new EditTree("abcdefg");
+		EditTree c = t.copy();
+		t.add('h');
+		t.add('x', 0);
+		t.delete(4);
+		assertEquals("xabcefgh", t.toString());
+		assertEquals("abcdefg", c.toString());
+		c.delete(0);
+		c.add('y', 3);
+		assertEquals("bcdyefg", c.toString());
+		assertEquals("xabcefgh", t.toString());
+	}
+
+	@Test
+	public void testSplitAndConcatenateDoNotShowInCopy() {
+		EditTree t = new EditTree("hello world");
+		EditTree c = t.copy();
+		EditTree world = t.split(5);
+		assertEquals("hello", t.toString());
+		assertEquals(" world", world.toString());
+		assertEquals("hello world", c.toString());
+		EditTree other = c.copy();
+		c.concatenate(world);
+		c.concatenate(t);
+		assertEquals("hello world worldhello", c.toString());
+		assertEquals("hello world", other.toString());
+	}
+
+	@Test
+	public void testManyCopiesStayIndependent() {
+		Random random = new Random(230);
+		EditTree t = new EditTree();
+		StringBuilder model = new StringBuilder();
+		EditTree[] copies = new EditTree[50];
+		String[] expected = new String[copies.length];
+		for (int i = 0; i < copies.length; i++) {
+			for (int j = 0; j < 40; j++) {
+				if (model.length() > 0 && random.nextInt(3) == 0) {
+					int pos = random.nextInt(model.length());
+					assertEquals(model.charAt(pos), t.delete(pos));
+					model.deleteCharAt(pos);
+				} else {
+					char ch = (char) ('a' + random.nextInt(26));
+					int pos = random.nextInt(model.length() + 1);
+					t.add(ch, pos);
+					model.insert(pos, ch);
+				}
+			}
+			copies[i] = t.copy();
+			expected[i] = model.toString();
+		}
+		for (int i = 0; i < copies.length; i++) {
+			assertEquals(expected[i], copies[i].toString());
+			assertEquals(expected[i].length(), copies[i].size());
+		}
+		assertEquals(model.toString(), t.toString());
+	}
+
+	@Test
+	public void testCopyKeepsRotationCount() {
+		EditTree t = new EditTree();
+		for (char ch = 'a'; ch <= 'z'; ch++) {
+			t.add(ch);
+		}
+		EditTree c = t.copy();
+		assertEquals(t.totalRotationCount(), c.totalRotationCount());
+		c.add('!');
+		assertEquals(t.totalRotationCount() + 1, c.totalRotationCount());
+		assertEquals("abcdefghijklmnopqrstuvwxyz", t.toString());
+	}
+
+}
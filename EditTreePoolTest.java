@@ -0,0 +1,116 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the node pool, which lets a tree add nodes it has deleted
+ * instead of allocating new ones.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+public class EditTreePoolTest {
+
+	@Test
+	public void testDeletedNodesAreAddedAgain() {
+		EditTree t = new EditTree();
+		t.setNodePoolCapacity(10);
+		t.add('a');
+		Node node = t.getRoot();
+		assertEquals('a', t.delete(0));
+		assertEquals(1, t.nodePoolSize());
+		t.add('b', 0);
+		assertTrue(node == t.getRoot());
+		assertEquals(0, t.nodePoolSize());
+		assertEquals("[b0=]", t.toDebugString());
+	}
+
+	@Test
+	public void testCapacityAndTrim() {
+		EditTree t = new EditTree("abcdefghijklmnopqrstuvwxyz");
+		t.delete(0);
+		assertEquals(0, t.nodePoolSize());
+		t.setNodePoolCapacity(5);
+		for (int i = 0; i < 10; i++)
+			t.delete(0);
+		assertEquals(5, t.nodePoolSize());
+		t.setNodePoolCapacity(3);
+		assertEquals(3, t.nodePoolSize());
+		t.trimNodePool();
+		assertEquals(0, t.nodePoolSize());
+		t.recycle(t.split(10));
+		assertEquals(3, t.nodePoolSize());
+		assertEquals("lmnopqrstu", t.toString());
+		t.setNodePoolCapacity(0);
+		assertEquals(0, t.nodePoolSize());
+		try {
+			t.setNodePoolCapacity(-1);
+			fail("Did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testSharedNodesAreNotRecycled() {
+		EditTree t = new EditTree("abcdefghijklmnop");
+		t.setNodePoolCapacity(100);
+		EditTree c = t.copy();
+		EditTree rest = t.split(8);
+		// only the nodes split had to copy belong to rest alone
+		t.recycle(rest);
+		assertTrue(t.nodePoolSize() < 8);
+		for (int i = 0; i < 8; i++)
+			t.delete(0);
+		for (int i = 0; i < 20; i++)
+			t.add((char) ('A' + i), i);
+		assertEquals("abcdefghijklmnop", c.toString());
+		assertEquals("ABCDEFGHIJKLMNOPQRST", t.toString());
+	}
+
+	@Test
+	public void testRandomEditsWithPool() {
+		Random random = new Random(230);
+		EditTree t = new EditTree();
+		EditTree plain = new EditTree();
+		t.setNodePoolCapacity(64);
+		StringBuilder model = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			int k = random.nextInt(10);
+			if (k < 5 || model.length() == 0) {
+				char ch = (char) ('a' + random.nextInt(26));
+				int pos = random.nextInt(model.length() + 1);
+				t.add(ch, pos);
+				plain.add(ch, pos);
+				model.insert(pos, ch);
+			} else if (k < 9) {
+				int pos = random.nextInt(model.length());
+				assertEquals(model.charAt(pos), t.delete(pos));
+				plain.delete(pos);
+				model.deleteCharAt(pos);
+			} else {
+				int pos = random.nextInt(model.length() + 1);
+				int length = random.nextInt(model.length() - pos + 1);
+				EditTree deleted = t.split(pos);
+				EditTree rest = deleted.split(length);
+				t.recycle(deleted);
+				t.concatenate(rest);
+				t.add("replacement", pos);
+				EditTree plainRest = plain.split(pos).split(length);
+				plain.concatenate(plainRest);
+				plain.add("replacement", pos);
+				model.replace(pos, pos + length, "replacement");
+			}
+		}
+		assertEquals(model.toString(), t.toString());
+		// the pool changes which node objects are used, never the tree
+		assertEquals(plain.toDebugString(), t.toDebugString());
+		assertEquals(plain.totalRotationCount(), t.totalRotationCount());
+	}
+
+}
@@ -1,8 +1,15 @@
 package editortrees;
 
+import java.util.concurrent.RecursiveTask;
+
 // A node in a height-balanced binary tree with rank.
-// Except for the NULL_NODE (if you choose to use one), one node cannot
-// belong to two different trees.
+// Since EditTree.copy, two trees can share nodes. A node marked shared is
+// never changed in place; it is copied first through unshared(),
+// unsharedLeft() or unsharedRight(). Copying a node marks its children as
+// shared, so any shared node reachable from an unmarked node is itself
+// marked, and nodes below a marked one are only safe to change once they
+// have been reached by copying down from the root. Pool.giveAll, and so
+// EditTree.recycle, skip marked nodes and everything below them.
 
 /**
  * Node class for an editor tree.
@@ -14,7 +21,6 @@ package editortrees;
 public class Node {
 	
 	public final static Node NULL_NODE = new Node();
-	private boolean secondDelete;
 	
 	enum Code {
 		SAME, LEFT, RIGHT;
@@ -36,6 +42,7 @@ public class Node {
 	public Node() {
 		this.left = NULL_NODE;
 		this.right = NULL_NODE;
+		this.height = -1;
 	}
 	
 	public Node(char ch) {
@@ -43,8 +50,8 @@ public class Node {
 		this.right = NULL_NODE;
 		this.balance = Code.SAME;
 		this.rank = 0;
+		this.height = 0;
 		this.element = ch;
-		this.secondDelete = false;
 	}
 	
 	// The fields would normally be private, but for the purposes of this class, 
@@ -54,7 +61,9 @@ public class Node {
 	char element;            
 	Node left, right; // subtrees
 	int rank;         // inorder position of this node within its own subtree.
+	int height;       // height of the subtree rooted here, -1 for the NULL_NODE.
 	Code balance; 
+	boolean shared;   // another tree may see this node, so copy it before changing it
 	// Node parent;  // You may want this field.
 	// Feel free to add other fields that you find useful
 
@@ -63,261 +72,106 @@ public class Node {
 	// For the following methods, you should fill in the details so that they work correctly
 	
 	public int height() {
-		if (this == NULL_NODE)
-			return -1;
-		return logHeight();
+		return this.height;
 	}
 	
 	/*
-	 * recurse ---------
-	 * if LEFT : Go left
-	 * if SAME : Doesn't matter :p
-	 * if RIGHT: Go right 
-	 * however, this relies on the nodes having
-	 * correct balance codes, which we are trying
-	 * to fix using our height method
+	 * The height is cached in every node, so this only looks at the children.
+	 * It has to be called bottom-up on every node whose subtree changed.
 	 */
-	private int logHeight() {
-		if (this == NULL_NODE || isLeaf())
-			return 0;
-		if (this.balance == Node.Code.LEFT) 
-			return 1 + this.left.logHeight();
-		return 1 + this.right.logHeight();
+	void updateHeight() {
+		this.height = 1 + Math.max(this.left.height, this.right.height);
+	}
+	
+	/*
+	 * Sets the balance code straight from the children's cached heights,
+	 * used wherever the old code had to call height() on both sides.
+	 */
+	void updateBalance() {
+		int leftHeight = this.left.height;
+		int rightHeight = this.right.height;
+		if (leftHeight > rightHeight)
+			this.balance = Code.LEFT;
+		else if (leftHeight < rightHeight)
+			this.balance = Code.RIGHT;
+		else
+			this.balance = Code.SAME;
 	}
 
-	public boolean isLeaf() {
-		return this.right == NULL_NODE && this.left == NULL_NODE;
+	/*
+	 * Returns this node if this tree is the only one that can see it, and
+	 * otherwise a private copy to change in place of it. Only a node reached
+	 * through parents that are not shared knows whether it is shared itself,
+	 * so changes have to make their way down from the root: copying a node
+	 * passes the mark on to its children, which both copies now point to.
+	 */
+	Node unshared() {
+		if (!this.shared)
+			return this;
+		Node copy = new Node(this.element);
+		copy.left = this.left;
+		copy.right = this.right;
+		copy.rank = this.rank;
+		copy.height = this.height;
+		copy.balance = this.balance;
+		this.left.markShared();
+		this.right.markShared();
+		return copy;
 	}
 	
-	public class DeletionWrapper {
-		
-		public boolean balanced;
-		public char deleted;
-		public int rotCount;
-		
-		public DeletionWrapper() {
-			this.balanced = false;
-			this.deleted = '\0';
-			this.rotCount = 0;
-		}
-		
+	// the NULL_NODE is never changed, so it never needs copying
+	void markShared() {
+		if (this != NULL_NODE)
+			this.shared = true;
 	}
 	
-	public class StringWrapper {
-	
-		public int numCalls;
-		
-		public StringWrapper() {
-			this.numCalls = 0;
-		}
-		
+	// these two may only be called on a node that is not shared
+	Node unsharedLeft() {
+		if (this.left.shared)
+			this.left = this.left.unshared();
+		return this.left;
 	}
 	
-	public DeletionWrapper deleteNode(int pos) {
-		DeletionWrapper toReturn = new DeletionWrapper();
-		boolean toLeft = false;
-		// Go left
-		if (pos < rank) {
-			this.rank--;
-			toReturn = left.deleteNode(pos);
-			// if we deleted the left child and that child had a null child, fix pointers and return
-			if (left.element == toReturn.deleted) {
-				if (left.left == NULL_NODE || left.right == NULL_NODE) {
-					if (left.isLeaf()) {
-						left = NULL_NODE;
-					} else if (left.right == NULL_NODE){
-						left = left.left;
-					} else if (left.left == NULL_NODE) {
-						left = left.right;
-					}
-				}
-			}
-			if (!toReturn.balanced && !this.secondDelete) {
-				toReturn.balanced = this.fixBalanceAfterDeletion(true, toReturn);
-			}
-			this.secondDelete = false;
-		// Go right
-		} else if (pos > rank) {
-			toReturn = right.deleteNode(pos - (1 + rank));
-			//does right have a null child?
-			if (right.element == toReturn.deleted) {
-				if (right.left == NULL_NODE || right.right == NULL_NODE) {
-					if (right.isLeaf()) {
-						right = NULL_NODE;
-					} else if (right.right == NULL_NODE){
-						right = right.left;
-					} else if (right.left == NULL_NODE) {
-						right = right.right;
-					}
-				}
-			} 
-			if (!toReturn.balanced && !this.secondDelete) {
-				toReturn.balanced = this.fixBalanceAfterDeletion(false, toReturn);
-			}
-			this.secondDelete = false;
-		} else if (this.rank == pos) {
-			toReturn.deleted = this.element;
-			if (this.right != NULL_NODE) {
-				this.secondDelete = true;
-				DeletionWrapper tempWrapper = this.deleteNode(pos+1);
-				this.element = tempWrapper.deleted;
-				toReturn.rotCount = tempWrapper.rotCount;
-				toReturn.balanced = tempWrapper.balanced;
-				if (!toReturn.balanced && !this.secondDelete) {
-					toReturn.balanced = this.fixBalanceAfterDeletion(false, toReturn);
-				}
-			}
-		}
-		return toReturn;
+	Node unsharedRight() {
+		if (this.right.shared)
+			this.right = this.right.unshared();
+		return this.right;
 	}
-	
-	/**
-	 * 
-	 * This method fixes the balance codes of nodes after deletion and handles rotations
-	 *
-	 * @param deleteLeft
-	 * @return true if the tree is balanced
-	 */
-	private boolean fixBalanceAfterDeletion(boolean deleteLeft, DeletionWrapper rapper) {
-		if (deleteLeft) {	
-			switch(this.balance) {
-			case LEFT:
-				this.balance = Code.SAME;
-				return false;
-			case RIGHT:
-				if (this.right.balance == Code.LEFT) {
-					rapper.rotCount++;
-					this.right.srr();
-				}
-				rapper.rotCount++;
-				this.srl();
-				int leftHeight = this.left.height();
-				int rightHeight = this.right.height();
-				
-				if (leftHeight > rightHeight) {
-					this.balance = Node.Code.LEFT;
-					return true;
-				}
-				if (leftHeight < rightHeight) {
-					this.balance = Node.Code.RIGHT;
-					return true;
-				}
-				if (leftHeight == rightHeight)
-					this.balance = Node.Code.SAME;
-				return false;
-			case SAME:
-				this.balance = Code.RIGHT;
-				return true;					
-			}
-		} else {
-			switch(this.balance) {
-			case LEFT:
-				if (this.left.balance == Code.RIGHT) {
-					rapper.rotCount++;
-					this.left.srl();
-				}
-				rapper.rotCount++;
-				this.srr();
-				int leftHeight = this.left.height();
-				int rightHeight = this.right.height();
-				
-				if (leftHeight > rightHeight) {
-					this.balance = Node.Code.LEFT;
-					return true;
-				}
-				if (leftHeight < rightHeight) {
-					this.balance = Node.Code.RIGHT;
-					return true;
-				}
-				if (leftHeight == rightHeight)
-					this.balance = Node.Code.SAME;
-				return false;
-			case RIGHT:
-				this.balance = Code.SAME;
-				return false;
-			case SAME:
-				this.balance = Code.LEFT;
-				return true;
-			}
-		}
-		return false;//should never reach this line
+
+	public boolean isLeaf() {
+		return this.right == NULL_NODE && this.left == NULL_NODE;
 	}
 	
-	//single rotate right
-    public void srr() {
-        //move head's data out
-        char temp = this.element;
-        //replace head's data with it's left child's
-        this.element = this.left.element;
-        //make the new right node for the head
-        Node newRight = new Node(temp);
-        //update ranks
-        newRight.rank = this.rank - (this.left.rank + 1);
-        this.rank = this.left.rank;
-        //set the newRight's subtrees
-        newRight.right = this.right;
-        newRight.left = this.left.right;
-        //set it as the right of the head
-        this.right = newRight;
-        //throw out the old left
-        this.left = this.left.left;
-        //update balance codes
-        if(this.left != Node.NULL_NODE){
-	        if(this.left.left.height() > this.left.right.height())
-	        	this.left.balance = Node.Code.LEFT;
-	        else if(this.left.left.height() < this.left.right.height())
-	        	this.left.balance = Node.Code.RIGHT;
-	        else if(this.left.left.height() == this.left.right.height())
-	        	this.left.balance = Node.Code.SAME;
-        }
-        this.balance = Code.SAME;
-        if(this.right != Node.NULL_NODE){
-			if(this.right.left.height() > this.right.right.height())
-	        	this.right.balance = Node.Code.LEFT;
-	        else if(this.right.left.height() < this.right.right.height())
-	        	this.right.balance = Node.Code.RIGHT;
-	        else//(this.right.left.height() == this.right.right.height())
-	        	this.right.balance = Node.Code.SAME;
-		}
-    }
+	//single rotate right, returns the new root of this subtree
+	public Node srr() {
+		Node newRoot = this.left.unshared();
+		//this node keeps only what was right of its old left child
+		this.left = newRoot.right;
+		newRoot.right = this;
+		//update ranks
+		this.rank = this.rank - (newRoot.rank + 1);
+		//update heights and balance codes, lowest node first
+		this.updateHeight();
+		this.updateBalance();
+		newRoot.updateHeight();
+		newRoot.updateBalance();
+		return newRoot;
+	}
 	
-	//single rotate left
-	public void srl() {
-		//move head's data out
-		char temp = this.element;
-		//replace head's data with it's right child's
-		this.element = this.right.element;
-		//make the new left node for the head
-		Node newLeft = new Node(temp);
-		//update the ranks
-		newLeft.rank = this.rank;
-		this.rank = this.rank + this.right.rank + 1;
-		//set the newLeft's subtrees
-		newLeft.left = this.left;
-		newLeft.right = this.right.left;
-		//set it as the left of the head
-		this.left = newLeft;
-		//throw out the old right
-		this.right = this.right.right;
-		//update balance codes
-		if(this.right != Node.NULL_NODE){
-			if(this.right.left.height() > this.right.right.height())
-	        	this.right.balance = Node.Code.LEFT;
-	        else if(this.right.left.height() < this.right.right.height())
-	        	this.right.balance = Node.Code.RIGHT;
-	        else//(this.right.left.height() == this.right.right.height())
-	        	this.right.balance = Node.Code.SAME;
-		}
-
-	    	this.balance = Code.SAME;
-	    if(this.left != Node.NULL_NODE){
-	        if(this.left.left.height() > this.left.right.height())
-	        	this.left.balance = Node.Code.LEFT;
-	        else if(this.left.left.height() < this.left.right.height())
-	        	this.left.balance = Node.Code.RIGHT;
-	        else if(this.left.left.height() == this.left.right.height())
-	        	this.left.balance = Node.Code.SAME;
-        }
+	//single rotate left, returns the new root of this subtree
+	public Node srl() {
+		Node newRoot = this.right.unshared();
+		//this node keeps only what was left of its old right child
+		this.right = newRoot.left;
+		newRoot.left = this;
+		//update ranks
+		newRoot.rank = newRoot.rank + this.rank + 1;
+		//update heights and balance codes, lowest node first
+		this.updateHeight();
+		this.updateBalance();
+		newRoot.updateHeight();
+		newRoot.updateBalance();
+		return newRoot;
 	}
 	
 	public int size() {
@@ -328,13 +182,11 @@ public class Node {
 	
 	@Override
 	public String toString() {
-		if (this == NULL_NODE)
-			return "";
-		StringBuilder s = new StringBuilder();
-		s.append(this.left.toString());
-		s.append(this.element);
-		s.append(this.right.toString());
-		return s.toString();
+		// one array for the whole subtree instead of a builder per node
+		int size = this.size();
+		char[] chars = new char[size];
+		this.getChars(0, 0, size, chars, 0);
+		return new String(chars);
 	}
 	
 	//it nodes who it is
@@ -343,12 +195,14 @@ public class Node {
 			this.left = new Node(e.left.element);
 			this.left.balance = e.left.balance;
 			this.left.rank = e.left.rank;
+			this.left.height = e.left.height;
 			this.left.copyHelper(e.left);
 		}
 		if (e.right != NULL_NODE) {
 			this.right = new Node(e.right.element);
 			this.right.balance = e.right.balance;
 			this.right.rank = e.right.rank;
+			this.right.height = e.right.height;
 			this.right.copyHelper(e.right);
 		}
 	}
@@ -388,91 +242,231 @@ public class Node {
 		return this.left.getNode(pos);
 	}
 
-	public void stringConstructorHelper(String s) {
-		// TODO Auto-generated method stub.
-		int indexOfRoot = s.length()/2;
-		
-		// Check if node is a leaf
-		if (s.length() == 1) {
-			this.element = s.charAt(0);
-			this.balance = Node.Code.SAME;
-			this.rank = 0;
+	/*
+	 * Copies the elements of this subtree whose positions fall in [from, to)
+	 * into dst, where offset is the position of this subtree's first node.
+	 * Only subtrees that overlap the range are visited, so this is
+	 * O(log N + to - from) rather than one getNode() per character.
+	 */
+	public void getChars(int offset, int from, int to, char[] dst, int dstBegin) {
+		if (this == NULL_NODE)
 			return;
+		int position = offset + this.rank;
+		if (from < position)
+			this.left.getChars(offset, from, to, dst, dstBegin);
+		if (from <= position && position < to)
+			dst[dstBegin + position - from] = this.element;
+		if (position + 1 < to)
+			this.right.getChars(position + 1, from, to, dst, dstBegin);
+	}
+
+	/*
+	 * Builds a perfectly balanced subtree holding s[begin, end) and returns
+	 * its root. The middle character becomes the root, just like splitting
+	 * the string in half, but only indexes are passed down, so each character
+	 * is read once and nothing but the nodes is allocated.
+	 */
+	static Node build(CharSequence s, int begin, int end) {
+		return build(s, begin, end, null);
+	}
+	
+	// Same as above, taking the nodes from pool while it has any.
+	static Node build(CharSequence s, int begin, int end, Pool pool) {
+		if (begin == end)
+			return NULL_NODE;
+		int middle = begin + (end - begin) / 2;
+		Node node = (pool == null) ? new Node(s.charAt(middle)) : pool.take(s.charAt(middle));
+		node.rank = middle - begin;
+		node.left = build(s, begin, middle, pool);
+		node.right = build(s, middle + 1, end, pool);
+		node.updateHeight();
+		node.updateBalance();
+		return node;
+	}
+	
+	// Same as above for a slice of a char array.
+	static Node build(char[] chars, int begin, int end) {
+		if (begin == end)
+			return NULL_NODE;
+		int middle = begin + (end - begin) / 2;
+		Node node = new Node(chars[middle]);
+		node.rank = middle - begin;
+		node.left = build(chars, begin, middle);
+		node.right = build(chars, middle + 1, end);
+		node.updateHeight();
+		node.updateBalance();
+		return node;
+	}
+
+	/*
+	 * The fork-join version of build. The two halves of a range never share
+	 * nodes, so the left half is forked while this thread builds the right
+	 * half. Ranges below the cutoff are built by the sequential build, so
+	 * the shape and ranks come out exactly the same.
+	 */
+	static class BuildTask extends RecursiveTask<Node> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final CharSequence s;
+		private final int begin;
+		private final int end;
+		private final int cutoff;
+		
+		BuildTask(CharSequence s, int begin, int end, int cutoff) {
+			this.s = s;
+			this.begin = begin;
+			this.end = end;
+			this.cutoff = cutoff;
+		}
+		
+		@Override
+		protected Node compute() {
+			if (this.end - this.begin <= this.cutoff)
+				return build(this.s, this.begin, this.end);
+			int middle = this.begin + (this.end - this.begin) / 2;
+			BuildTask leftTask = new BuildTask(this.s, this.begin, middle, this.cutoff);
+			leftTask.fork();
+			Node right = new BuildTask(this.s, middle + 1, this.end, this.cutoff).compute();
+			Node node = new Node(this.s.charAt(middle));
+			node.rank = middle - this.begin;
+			node.left = leftTask.join();
+			node.right = right;
+			node.updateHeight();
+			node.updateBalance();
+			return node;
 		}
 		
-		this.element = s.charAt(indexOfRoot);
+	}
+
+	/*
+	 * Nodes a tree has let go of, kept for it to use again instead of
+	 * allocating new ones. They are chained through left. At most capacity
+	 * of them are kept; any more are left to the garbage collector. Only
+	 * nodes no other tree can see may be given to a pool, since the next
+	 * take() overwrites them.
+	 */
+	static final class Pool {
+		
+		private Node free = NULL_NODE;
+		private int size;
+		private int capacity;
 		
-		String leftString = s.substring(0, indexOfRoot);
-		String rightString = s.substring(indexOfRoot + 1);
+		Pool(int capacity) {
+			this.capacity = capacity;
+		}
 		
-		this.rank = leftString.length();
+		int size() {
+			return this.size;
+		}
 		
-		if(Math.floor(Math.log(leftString.length())/Math.log(2)) > Math.floor(Math.log(rightString.length())/Math.log(2))){
-			//height of left side is bigger
-			this.balance = Node.Code.LEFT;
+		int capacity() {
+			return this.capacity;
 		}
-		else if(Math.floor(Math.log(leftString.length())/Math.log(2)) < Math.floor(Math.log(rightString.length())/Math.log(2))){
-			//height of right side is bigger
-			this.balance = Node.Code.RIGHT;
+		
+		// returns a node holding ch with no children, from the pool if it has one
+		Node take(char ch) {
+			if (this.free == NULL_NODE)
+				return new Node(ch);
+			Node node = this.free;
+			this.free = node.left;
+			this.size--;
+			node.left = NULL_NODE;
+			node.right = NULL_NODE;
+			node.balance = Code.SAME;
+			node.rank = 0;
+			node.height = 0;
+			node.element = ch;
+			node.shared = false;
+			return node;
 		}
-		else{
-			this.balance = Node.Code.SAME;
+		
+		// keeps node if there is room for it
+		void give(Node node) {
+			if (this.size == this.capacity)
+				return;
+			node.left = this.free;
+			node.right = NULL_NODE;
+			this.free = node;
+			this.size++;
 		}
 		
-		if (leftString.length() != 0) {
-			this.left = new Node();
-			this.left.stringConstructorHelper(leftString);
+		// Keeps as many nodes of the subtree at node as there is room for,
+		// leaving out shared nodes and everything below them, which a copy
+		// of the tree may still be using.
+		void giveAll(Node node) {
+			if (node == NULL_NODE || node.shared || this.size == this.capacity)
+				return;
+			Node left = node.left;
+			Node right = node.right;
+			give(node);
+			giveAll(left);
+			giveAll(right);
 		}
-		if (rightString.length() != 0) {
-			this.right = new Node();
-			this.right.stringConstructorHelper(rightString);
+		
+		// drops pooled nodes until at most capacity are left
+		void setCapacity(int capacity) {
+			this.capacity = capacity;
+			while (this.size > capacity) {
+				Node node = this.free;
+				this.free = node.left;
+				node.left = NULL_NODE;
+				this.size--;
+			}
 		}
 		
 	}
 
-	public boolean rebalanceAfterConcatenation(boolean isLeft, Node q, int vSize) {
-		if(this == q){
-			this.rank = this.left.size();
-			return false;
+	/*
+	 * Joins left, pivot and right, in that order, into one balanced tree and
+	 * returns its root. leftSize is the number of nodes in left. The pivot
+	 * hangs off the spine of the taller tree at the height of the shorter
+	 * one, so only the nodes down that spine are visited and rebalanced,
+	 * which is O(difference in heights + 1) using the cached heights. The
+	 * pivot has to be a node that no other tree can see.
+	 */
+	static Node join(Node left, int leftSize, Node pivot, Node right) {
+		if (left.height > right.height + 1) {
+			left = left.unshared();
+			// goes down left's right spine, where no rank changes
+			left.right = join(left.right, leftSize - left.rank - 1, pivot, right);
+			return left.rebalance();
 		}
-		if(isLeft){
-			this.rank += vSize + 1;
-			boolean balanced = this.left.rebalanceAfterConcatenation(isLeft, q, vSize);
-			if(!balanced){
-				switch(this.balance){
-				case LEFT:
-					this.srr();
-					return true;
-				case RIGHT:
-					this.balance = Code.SAME;
-					return true;
-				case SAME:
-					this.balance = Code.LEFT;
-					return false;
-				default:
-					break;
-				}
-			}
+		if (right.height > left.height + 1) {
+			right = right.unshared();
+			// goes down right's left spine, which gains leftSize + 1 nodes
+			right.rank += leftSize + 1;
+			right.left = join(left, leftSize, pivot, right.left);
+			return right.rebalance();
 		}
-		else{
-			boolean balanced = this.right.rebalanceAfterConcatenation(isLeft, q, vSize);
-			if(!balanced){
-				switch(this.balance){
-				case LEFT:
-					this.balance = Code.SAME;
-					return true;
-				case RIGHT:
-					this.srl();
-					return true;
-				case SAME:
-					this.balance = Code.RIGHT;
-					return false;
-				default:
-					break;
-				}
-			}
+		pivot.left = left;
+		pivot.right = right;
+		pivot.rank = leftSize;
+		pivot.updateHeight();
+		pivot.updateBalance();
+		return pivot;
+	}
+	
+	/*
+	 * Rotates this node if one side has become two taller than the other,
+	 * double rotating when the taller grandchild is on the inside, and
+	 * returns the new root of this subtree.
+	 */
+	Node rebalance() {
+		int difference = this.left.height - this.right.height;
+		if (difference > 1) {
+			if (this.left.balance == Code.RIGHT)
+				this.left = this.unsharedLeft().srl();
+			return this.srr();
+		}
+		if (difference < -1) {
+			if (this.right.balance == Code.LEFT)
+				this.right = this.unsharedRight().srr();
+			return this.srl();
 		}
-		return false;
+		this.updateHeight();
+		this.updateBalance();
+		return this;
 	}
 	
-}
\ No newline at end of file
+}
@@ -0,0 +1,232 @@
+package editortrees;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * An ArenaEditTree whose nodes are kept outside the Java heap, in direct
+ * ByteBuffers, so however long the text gets the garbage collector only
+ * ever sees a few buffer objects. Each node takes 16 bytes of a buffer:
+ * left, right and rank as ints, then the element as a char and the height
+ * as a byte.
+ *
+ * The buffers are pages of up to PAGE_NODES nodes. A tree grows by adding
+ * pages, so nodes never move once they have a slot and no one buffer has
+ * to hold all of them; only a first page smaller than that is grown by
+ * copying it into one twice the size.
+ *
+ * Trees made by split share their pages with the tree they came from, and
+ * like any ArenaEditTree's, a piece that is dropped should be passed to
+ * recycle so its slots are used again. close() lets go of the pages of
+ * this tree and of every tree that shares them, after which using any of
+ * those trees throws an IllegalStateException. The memory is given back to
+ * the system once the buffers are collected.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+
+public class OffHeapEditTree extends ArenaEditTree implements AutoCloseable {
+
+	static final int PAGE_SHIFT = 16;
+	static final int PAGE_NODES = 1 << PAGE_SHIFT; // 1 MB of nodes per page
+	private static final int PAGE_MASK = PAGE_NODES - 1;
+	private static final int NODE_BYTES = 16;
+	private static final int INITIAL_CAPACITY = 16;
+
+	// offsets of the fields within a node
+	private static final int LEFT = 0;
+	private static final int RIGHT = 4;
+	private static final int RANK = 8;
+	private static final int ELEMENT = 12;
+	private static final int HEIGHT = 14;
+
+	/*
+	 * An arena in direct ByteBuffers. Node i is in page i >> PAGE_SHIFT at
+	 * byte (i & PAGE_MASK) * NODE_BYTES.
+	 */
+	static final class OffHeapArena extends ArenaEditTree.Arena {
+
+		private ByteBuffer[] pages; // null once closed
+		private int capacity;
+
+		OffHeapArena(int capacity) {
+			this.capacity = Math.min(Math.max(capacity, 2), PAGE_NODES);
+			this.pages = new ByteBuffer[] { allocatePage(this.capacity) };
+			setHeight(NULL, -1);
+		}
+
+		private static ByteBuffer allocatePage(int nodes) {
+			return ByteBuffer.allocateDirect(nodes * NODE_BYTES).order(ByteOrder.nativeOrder());
+		}
+
+		private ByteBuffer page(int node) {
+			ByteBuffer[] pages = this.pages;
+			if (pages == null)
+				throw new IllegalStateException("tree is closed");
+			return pages[node >>> PAGE_SHIFT];
+		}
+
+		private static int offset(int node) {
+			return (node & PAGE_MASK) * NODE_BYTES;
+		}
+
+		@Override
+		int left(int node) {
+			return page(node).getInt(offset(node) + LEFT);
+		}
+
+		@Override
+		int right(int node) {
+			return page(node).getInt(offset(node) + RIGHT);
+		}
+
+		@Override
+		int rank(int node) {
+			return page(node).getInt(offset(node) + RANK);
+		}
+
+		@Override
+		char element(int node) {
+			return page(node).getChar(offset(node) + ELEMENT);
+		}
+
+		@Override
+		int height(int node) {
+			return page(node).get(offset(node) + HEIGHT);
+		}
+
+		@Override
+		void setLeft(int node, int left) {
+			page(node).putInt(offset(node) + LEFT, left);
+		}
+
+		@Override
+		void setRight(int node, int right) {
+			page(node).putInt(offset(node) + RIGHT, right);
+		}
+
+		@Override
+		void setRank(int node, int rank) {
+			page(node).putInt(offset(node) + RANK, rank);
+		}
+
+		@Override
+		void setElement(int node, char element) {
+			page(node).putChar(offset(node) + ELEMENT, element);
+		}
+
+		@Override
+		void setHeight(int node, int height) {
+			page(node).put(offset(node) + HEIGHT, (byte) height);
+		}
+
+		@Override
+		int capacity() {
+			return this.capacity;
+		}
+
+		@Override
+		void grow() {
+			if (this.pages == null)
+				throw new IllegalStateException("tree is closed");
+			if (this.capacity < PAGE_NODES) {
+				// the only page is not full size yet, so it is copied into a
+				// bigger one
+				int capacity = Math.min(2 * this.capacity, PAGE_NODES);
+				ByteBuffer page = allocatePage(capacity);
+				page.put(this.pages[0].duplicate().clear());
+				this.pages[0] = page;
+				this.capacity = capacity;
+			} else {
+				if (this.capacity > Integer.MAX_VALUE - PAGE_NODES)
+					throw new OutOfMemoryError("too many nodes for one arena");
+				int count = this.pages.length;
+				this.pages = Arrays.copyOf(this.pages, count + 1);
+				this.pages[count] = allocatePage(PAGE_NODES);
+				this.capacity += PAGE_NODES;
+			}
+		}
+
+		void close() {
+			this.pages = null;
+		}
+
+	}
+
+	/**
+	 * Construct an empty tree
+	 */
+	public OffHeapEditTree() {
+		super(new OffHeapArena(INITIAL_CAPACITY));
+	}
+
+	/**
+	 * Construct a single-node tree whose element is ch
+	 *
+	 * @param ch
+	 */
+	public OffHeapEditTree(char ch) {
+		this();
+		add(ch);
+	}
+
+	/**
+	 * Make this tree be a copy of e, in pages of its own, with the same shape
+	 * and contents.
+	 *
+	 * @param e
+	 */
+	public OffHeapEditTree(ArenaEditTree e) {
+		super(new OffHeapArena(e.size() + 1), e);
+	}
+
+	/**
+	 * Create a tree whose toString is s in O(N) time.
+	 *
+	 * @param s
+	 */
+	public OffHeapEditTree(String s) {
+		this((CharSequence) s);
+	}
+
+	/**
+	 * Create a tree whose toString is the contents of s, in O(N) time.
+	 *
+	 * @param s
+	 */
+	public OffHeapEditTree(CharSequence s) {
+		super(new OffHeapArena(s.length() + 1), s);
+	}
+
+	// a tree made of nodes already in arena, for split
+	private OffHeapEditTree(Arena arena, int root, int size) {
+		super(arena, root, size);
+	}
+
+	@Override
+	ArenaEditTree newTree(Arena arena, int root, int size) {
+		return new OffHeapEditTree(arena, root, size);
+	}
+
+	@Override
+	public OffHeapEditTree split(int pos) throws IndexOutOfBoundsException {
+		return (OffHeapEditTree) super.split(pos);
+	}
+
+	@Override
+	public OffHeapEditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		return (OffHeapEditTree) super.delete(start, length);
+	}
+
+	/**
+	 * Lets go of the pages this tree's nodes are in, which it shares with
+	 * any tree it was split from or concatenated with. Closing a tree more
+	 * than once does nothing.
+	 */
+	@Override
+	public void close() {
+		((OffHeapArena) arena()).close();
+	}
+
+}
@@ -0,0 +1,87 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for OffHeapEditTree: that it grows across pages, mixes with trees
+ * on the heap and can no longer be used once closed.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+public class OffHeapEditTreeTest {
+
+	@Test
+	public void testGrowsAcrossPages() {
+		// enough nodes for a few pages, added at random so that every page
+		// has nodes linked to nodes in the others
+		Random random = new Random(230);
+		int count = 3 * OffHeapEditTree.PAGE_NODES + 5;
+		EditTree expected = new EditTree();
+		try (OffHeapEditTree actual = new OffHeapEditTree()) {
+			for (int i = 0; i < count; i++) {
+				char ch = (char) ('a' + random.nextInt(26));
+				int pos = random.nextInt(i + 1);
+				expected.add(ch, pos);
+				actual.add(ch, pos);
+			}
+			for (int i = 0; i < count / 2; i++) {
+				int pos = random.nextInt(expected.size());
+				assertEquals(expected.delete(pos), actual.delete(pos));
+			}
+			assertEquals(expected.toDebugString(), actual.toDebugString());
+			assertEquals(expected.totalRotationCount(), actual.totalRotationCount());
+			OffHeapEditTree rest = actual.split(1000);
+			assertEquals(expected.get(1000, 20), rest.get(0, 20));
+			actual.concatenate(rest);
+			assertEquals(expected.toString(), actual.toString());
+		}
+	}
+
+	@Test
+	public void testMixesWithHeapTrees() {
+		OffHeapEditTree offHeap = new OffHeapEditTree("abc");
+		ArenaEditTree onHeap = new ArenaEditTree("defghijklmnop");
+		// the larger tree is on the heap, but offHeap keeps its nodes off it
+		offHeap.concatenate(onHeap);
+		assertEquals("abcdefghijklmnop", offHeap.toString());
+		assertEquals("", onHeap.toString());
+		onHeap.add('x');
+		onHeap.concatenate(offHeap.split(13));
+		assertEquals("xnop", onHeap.toString());
+		ArenaEditTree copy = new ArenaEditTree(offHeap);
+		offHeap.close();
+		assertEquals("abcdefghijklm", copy.toString());
+		// onHeap's nodes stayed on the heap all along, so it still works
+		assertEquals("xnop", onHeap.toString());
+		onHeap.add('q');
+		onHeap.concatenate(new ArenaEditTree("rs"));
+		assertEquals("xnopqrs", onHeap.toString());
+	}
+
+	@Test
+	public void testClosedTreeCannotBeUsed() {
+		OffHeapEditTree t = new OffHeapEditTree("hello world");
+		OffHeapEditTree rest = t.split(5);
+		t.close();
+		t.close();
+		try {
+			t.get(0);
+			fail("Did not throw IllegalStateException");
+		} catch (IllegalStateException e) {
+			// success
+		}
+		try {
+			// rest shares its pages with t, so it is closed too
+			rest.add('!');
+			fail("Did not throw IllegalStateException");
+		} catch (IllegalStateException e) {
+			// success
+		}
+	}
+
+}
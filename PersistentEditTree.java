@@ -0,0 +1,210 @@
+package editortrees;
+
+/**
+ * One version of a text that is never changed. Every edit returns a new
+ * version and leaves this one as it was, so old versions can be kept around
+ * for undo or history. Versions share all of the nodes an edit did not touch
+ * (see EditTree.copy), so each edit adds only O(log N) nodes, and every
+ * version that is kept can still be read in O(log N) per position.
+ * 
+ * Reading a version changes nothing, not even the cached lookup paths an
+ * EditTree keeps, so a version can be read from any number of threads.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+
+public class PersistentEditTree {
+
+	// Its nodes never change after the constructor. Only making a new version
+	// writes to it, to mark the nodes shared and drop its cached paths.
+	private final EditTree tree;
+
+	/**
+	 * Construct the version holding the empty text
+	 */
+	public PersistentEditTree() {
+		this(new EditTree());
+	}
+
+	/**
+	 * Construct the version holding s
+	 *
+	 * @param s
+	 */
+	public PersistentEditTree(CharSequence s) {
+		this(new EditTree(s));
+	}
+
+	private PersistentEditTree(EditTree tree) {
+		this.tree = tree;
+	}
+
+	/**
+	 * Makes a version holding the current contents of tree. Later changes to
+	 * tree do not show in it.
+	 *
+	 * @param tree
+	 * @return the new version
+	 */
+	public static PersistentEditTree of(EditTree tree) {
+		return new PersistentEditTree(tree.copy());
+	}
+
+	/**
+	 * @return a separate EditTree with the contents of this version, which
+	 *         can be changed without affecting it
+	 */
+	public EditTree toEditTree() {
+		return this.tree.copy();
+	}
+
+	/**
+	 * @param ch
+	 *            character to add to the end
+	 * @return the new version
+	 */
+	public PersistentEditTree add(char ch) {
+		EditTree next = this.tree.copy();
+		next.add(ch);
+		return new PersistentEditTree(next);
+	}
+
+	/**
+	 * @param ch
+	 *            character to add
+	 * @param pos
+	 *            inorder position of the added character
+	 * @return the new version
+	 * @throws IndexOutOfBoundsException
+	 */
+	public PersistentEditTree add(char ch, int pos) throws IndexOutOfBoundsException {
+		EditTree next = this.tree.copy();
+		next.add(ch, pos);
+		return new PersistentEditTree(next);
+	}
+
+	/**
+	 * @param s
+	 *            the characters to add
+	 * @param pos
+	 *            inorder position of the first added character
+	 * @return the new version
+	 * @throws IndexOutOfBoundsException
+	 */
+	public PersistentEditTree add(CharSequence s, int pos) throws IndexOutOfBoundsException {
+		EditTree next = this.tree.copy();
+		next.add(s, pos);
+		return new PersistentEditTree(next);
+	}
+
+	/**
+	 * @param pos
+	 *            position of the character to delete
+	 * @return the new version
+	 * @throws IndexOutOfBoundsException
+	 */
+	public PersistentEditTree delete(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.tree.size())
+			throw new IndexOutOfBoundsException();
+		EditTree next = this.tree.copy();
+		next.delete(pos);
+		return new PersistentEditTree(next);
+	}
+
+	/**
+	 * @param start
+	 *            position of the first character to delete
+	 * @param length
+	 *            number of characters to delete
+	 * @return the new version
+	 * @throws IndexOutOfBoundsException
+	 */
+	public PersistentEditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		EditTree next = this.tree.copy();
+		next.delete(start, length);
+		return new PersistentEditTree(next);
+	}
+
+	/**
+	 * @param pos
+	 *            where to split
+	 * @return two versions, the first with the characters before pos and the
+	 *         second with the rest
+	 * @throws IndexOutOfBoundsException
+	 */
+	public PersistentEditTree[] split(int pos) throws IndexOutOfBoundsException {
+		EditTree first = this.tree.copy();
+		EditTree second = first.split(pos);
+		return new PersistentEditTree[] { new PersistentEditTree(first), new PersistentEditTree(second) };
+	}
+
+	/**
+	 * Unlike EditTree.concatenate, other is left as it was, and other may be
+	 * this version.
+	 *
+	 * @param other
+	 *            the version to put after this one
+	 * @return the new version
+	 */
+	public PersistentEditTree concatenate(PersistentEditTree other) {
+		EditTree next = this.tree.copy();
+		next.concatenate(other.tree.copy());
+		return new PersistentEditTree(next);
+	}
+
+	/**
+	 * @param pos
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.tree.size())
+			throw new IndexOutOfBoundsException();
+		// straight down from the root, since EditTree.get moves its finger
+		return this.tree.getRoot().getNode(pos).element;
+	}
+
+	/**
+	 * @param pos
+	 *            location of the first character
+	 * @param length
+	 *            number of characters
+	 * @return the characters from pos to pos + length - 1
+	 * @throws IndexOutOfBoundsException
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		return this.tree.get(pos, length);
+	}
+
+	/**
+	 * @param s
+	 *            the string to look for
+	 * @param pos
+	 *            the position to begin the search
+	 * @return the position of the first occurrence of s at or after pos; -1
+	 *         if there is none
+	 */
+	public int find(String s, int pos) {
+		return this.tree.find(s, pos);
+	}
+
+	/**
+	 * @return the number of characters in this version
+	 */
+	public int size() {
+		return this.tree.size();
+	}
+
+	/**
+	 * @return the height of this version's tree
+	 */
+	public int height() {
+		return this.tree.height();
+	}
+
+	@Override
+	public String toString() {
+		return this.tree.toString();
+	}
+
+}
@@ -0,0 +1,114 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for PersistentEditTree, whose edits return new versions.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+public class PersistentEditTreeTest {
+
+	@Test
+	public void testEditsLeaveOldVersions() {
+		PersistentEditTree v0 = new PersistentEditTree("abc");
+		PersistentEditTree v1 = v0.add('d');
+		PersistentEditTree v2 = v1.add('x', 1);
+		PersistentEditTree v3 = v2.delete(0);
+		PersistentEditTree v4 = v3.add("123", 2);
+		PersistentEditTree v5 = v4.delete(1, 3);
+		assertEquals("abc", v0.toString());
+		assertEquals("abcd", v1.toString());
+		assertEquals("axbcd", v2.toString());
+		assertEquals("xbcd", v3.toString());
+		assertEquals("xb123cd", v4.toString());
+		assertEquals("x3cd", v5.toString());
+		assertEquals('x', v2.get(1));
+		assertEquals("b12", v4.get(1, 3));
+		assertEquals(4, v5.size());
+	}
+
+	@Test
+	public void testSplitAndConcatenateLeaveOldVersions() {
+		PersistentEditTree v = new PersistentEditTree("hello world");
+		PersistentEditTree[] halves = v.split(5);
+		assertEquals("hello", halves[0].toString());
+		assertEquals(" world", halves[1].toString());
+		assertEquals("hello world", v.toString());
+		PersistentEditTree both = halves[1].concatenate(halves[0]);
+		assertEquals(" worldhello", both.toString());
+		PersistentEditTree twice = v.concatenate(v);
+		assertEquals("hello worldhello world", twice.toString());
+		assertEquals("hello", halves[0].toString());
+		assertEquals(" world", halves[1].toString());
+		assertEquals("hello world", v.toString());
+	}
+
+	@Test
+	public void testConversionsCopy() {
+		EditTree t = new EditTree("abc");
+		PersistentEditTree v = PersistentEditTree.of(t);
+		t.add('d');
+		assertEquals("abc", v.toString());
+		EditTree u = v.toEditTree();
+		u.delete(0);
+		assertEquals("abc", v.toString());
+		assertEquals("bc", u.toString());
+	}
+
+	@Test
+	public void testEveryVersionStaysReadable() {
+		Random random = new Random(230);
+		List<PersistentEditTree> versions = new ArrayList<PersistentEditTree>();
+		List<String> expected = new ArrayList<String>();
+		PersistentEditTree v = new PersistentEditTree();
+		StringBuilder model = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			if (model.length() > 0 && random.nextInt(3) == 0) {
+				int pos = random.nextInt(model.length());
+				v = v.delete(pos);
+				model.deleteCharAt(pos);
+			} else {
+				char ch = (char) ('a' + random.nextInt(26));
+				int pos = random.nextInt(model.length() + 1);
+				v = v.add(ch, pos);
+				model.insert(pos, ch);
+			}
+			versions.add(v);
+			expected.add(model.toString());
+		}
+		for (int i = 0; i < versions.size(); i++) {
+			String s = expected.get(i);
+			assertEquals(s, versions.get(i).toString());
+			for (int pos = 0; pos < s.length(); pos += 7) {
+				assertEquals(s.charAt(pos), versions.get(i).get(pos));
+			}
+		}
+	}
+
+	@Test
+	public void testBadPositionsLeaveVersionAlone() {
+		PersistentEditTree v = new PersistentEditTree("abc");
+		try {
+			v.delete(3);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			v.add('x', 4);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		assertEquals("abc", v.toString());
+	}
+
+}
@@ -0,0 +1,213 @@
+package editortrees;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * An EditTree that many threads can read while one of them edits it. Every
+ * edit is made to a private working tree and the result is then published
+ * as a new PersistentEditTree version. Readers take the version that is
+ * current with one atomic read and never lock, and a version they hold
+ * never changes under them. Writers take turns, but never wait for readers.
+ *
+ * Publishing costs O(1) (see EditTree.copy), and the next edit copies only
+ * the O(log N) nodes on its path, so nodes that readers can see are never
+ * changed in place.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+
+public class SnapshotEditTree {
+
+	private final AtomicReference<PersistentEditTree> current;
+	private final Object writeLock = new Object();
+	private EditTree working; // only used while holding writeLock
+
+	/**
+	 * Construct an empty tree
+	 */
+	public SnapshotEditTree() {
+		this(new EditTree());
+	}
+
+	/**
+	 * Construct a tree holding s
+	 *
+	 * @param s
+	 */
+	public SnapshotEditTree(CharSequence s) {
+		this(new EditTree(s));
+	}
+
+	private SnapshotEditTree(EditTree working) {
+		this.working = working;
+		this.current = new AtomicReference<PersistentEditTree>(PersistentEditTree.of(working));
+	}
+
+	/**
+	 * Never blocks. The version returned stays the same however the tree is
+	 * edited afterwards, so a reader that needs several consistent reads
+	 * should make them all on one snapshot.
+	 *
+	 * @return the latest published version
+	 */
+	public PersistentEditTree snapshot() {
+		return this.current.get();
+	}
+
+	/**
+	 * Makes all of the changes edits makes to the tree it is given, then
+	 * publishes them as one version, so readers see either none of them or
+	 * all of them. If edits throws, none of its changes are kept.
+	 *
+	 * @param edits
+	 *            changes to make to the working tree, which must not be kept
+	 *            after it returns
+	 */
+	public void update(Consumer<EditTree> edits) {
+		synchronized (this.writeLock) {
+			try {
+				edits.accept(this.working);
+			} catch (RuntimeException | Error e) {
+				this.working = this.current.get().toEditTree();
+				throw e;
+			}
+			publish();
+		}
+	}
+
+	// Only called while holding writeLock.
+	private void publish() {
+		this.current.set(PersistentEditTree.of(this.working));
+	}
+
+	/**
+	 * @param ch
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char ch) {
+		synchronized (this.writeLock) {
+			this.working.add(ch);
+			publish();
+		}
+	}
+
+	/**
+	 * @param ch
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public void add(char ch, int pos) throws IndexOutOfBoundsException {
+		synchronized (this.writeLock) {
+			this.working.add(ch, pos);
+			publish();
+		}
+	}
+
+	/**
+	 * @param s
+	 *            the characters to add
+	 * @param pos
+	 *            inorder position of the first added character
+	 * @throws IndexOutOfBoundsException
+	 */
+	public void add(CharSequence s, int pos) throws IndexOutOfBoundsException {
+		synchronized (this.writeLock) {
+			this.working.add(s, pos);
+			publish();
+		}
+	}
+
+	/**
+	 * @param pos
+	 *            position of character to delete
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		synchronized (this.writeLock) {
+			char deleted = this.working.delete(pos);
+			publish();
+			return deleted;
+		}
+	}
+
+	/**
+	 * @param start
+	 *            position of the first character to delete
+	 * @param length
+	 *            number of characters to delete
+	 * @return a tree holding the deleted characters
+	 * @throws IndexOutOfBoundsException
+	 */
+	public EditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		synchronized (this.writeLock) {
+			EditTree deleted = this.working.delete(start, length);
+			publish();
+			return deleted;
+		}
+	}
+
+	/**
+	 * @param pos
+	 *            where to split
+	 * @return a new tree holding the characters from pos on, which are
+	 *         removed from this tree
+	 * @throws IndexOutOfBoundsException
+	 */
+	public EditTree split(int pos) throws IndexOutOfBoundsException {
+		synchronized (this.writeLock) {
+			EditTree rest = this.working.split(pos);
+			publish();
+			return rest;
+		}
+	}
+
+	/**
+	 * @param other
+	 *            tree to add to the end of this one, which is made empty
+	 */
+	public void concatenate(EditTree other) {
+		synchronized (this.writeLock) {
+			this.working.concatenate(other);
+			publish();
+		}
+	}
+
+	/**
+	 * @param pos
+	 * @return the character at that position in the latest version
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		return snapshot().get(pos);
+	}
+
+	/**
+	 * @param pos
+	 *            location of the first character
+	 * @param length
+	 *            number of characters
+	 * @return the characters from pos to pos + length - 1 in the latest
+	 *         version
+	 * @throws IndexOutOfBoundsException
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		return snapshot().get(pos, length);
+	}
+
+	/**
+	 * @return the number of characters in the latest version
+	 */
+	public int size() {
+		return snapshot().size();
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+}
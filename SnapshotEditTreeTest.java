@@ -0,0 +1,116 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests for SnapshotEditTree, whose readers see published versions while a
+ * writer keeps editing.
+ *
+ * @author Cambron Johnson, Benjamin Hall, Sophie Brusniak.
+ */
+public class SnapshotEditTreeTest {
+
+	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+	@Test
+	public void testSnapshotDoesNotChange() {
+		SnapshotEditTree t = new SnapshotEditTree("abc");
+		PersistentEditTree before = t.snapshot();
+		t.add('d');
+		t.delete(0);
+		t.add("xy", 1);
+		assertEquals("abc", before.toString());
+		assertEquals("bxycd", t.toString());
+		assertEquals("bxycd", t.snapshot().toString());
+		assertEquals('x', t.get(1));
+		assertEquals(5, t.size());
+	}
+
+	@Test
+	public void testUpdateIsAllOrNothing() {
+		SnapshotEditTree t = new SnapshotEditTree("abc");
+		t.update(tree -> {
+			tree.add('d');
+			tree.delete(0);
+		});
+		assertEquals("bcd", t.toString());
+		try {
+			t.update(tree -> {
+				tree.add('e');
+				tree.delete(10);
+			});
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		assertEquals("bcd", t.toString());
+		t.add('f');
+		assertEquals("bcdf", t.toString());
+	}
+
+	@Test
+	public void testReadersSeeWholeVersions() throws InterruptedException {
+		// Every version is a prefix of the alphabet repeated, and the writer
+		// only ever lengthens it, sometimes with extra characters that are
+		// added and taken out again in the same update.
+		final SnapshotEditTree t = new SnapshotEditTree();
+		final int length = 20000;
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < length; i++) {
+					final char ch = ALPHABET.charAt(i % ALPHABET.length());
+					if (i % 3 == 0) {
+						t.update(tree -> {
+							int middle = tree.size() / 2;
+							tree.add('!', middle);
+							tree.add(ch, tree.size());
+							tree.delete(middle);
+						});
+					} else {
+						t.add(ch);
+					}
+				}
+			}
+		};
+		Thread[] readers = new Thread[3];
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread() {
+				@Override
+				public void run() {
+					int lastSize = 0;
+					while (lastSize < length && failure.get() == null) {
+						PersistentEditTree version = t.snapshot();
+						int size = version.size();
+						String s = version.toString();
+						if (size < lastSize || s.length() != size)
+							failure.set("size went from " + lastSize + " to " + size);
+						for (int i = 0; i < size; i += 97) {
+							if (s.charAt(i) != ALPHABET.charAt(i % ALPHABET.length())
+									|| version.get(i) != s.charAt(i))
+								failure.set("bad character at " + i + " of " + size);
+						}
+						lastSize = size;
+					}
+				}
+			};
+		}
+		writer.start();
+		for (Thread reader : readers)
+			reader.start();
+		writer.join();
+		for (Thread reader : readers)
+			reader.join();
+		assertEquals(null, failure.get());
+		assertEquals(length, t.size());
+		assertTrue(t.snapshot().height() <= 1.44 * Math.log(length + 2) / Math.log(2));
+	}
+
+}